@@ -0,0 +1,124 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+import static org.openstreetmap.josm.tools.I18n.trn;
+
+import javax.swing.JOptionPane;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.openstreetmap.josm.gui.Notification;
+import org.openstreetmap.josm.gui.PleaseWaitRunnable;
+import org.openstreetmap.josm.tools.Logging;
+
+import com.kaart.openqa.profiles.GenericInformation.IssueAction;
+import com.kaart.openqa.profiles.Outbox;
+
+/**
+ * Send an action on many issues, wait for it to be sent while showing the
+ * progress, and report the issues that could not be sent. Canceling only stops
+ * waiting; the {@link Outbox} keeps sending the actions.
+ *
+ * @author Taylor Smock
+ */
+final class BulkActionTask extends PleaseWaitRunnable {
+    /** How often the task is checked for cancellation while waiting on an action */
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final IssueAction action;
+    private final List<Supplier<List<CompletableFuture<Outbox.Status>>>> batches;
+    private final List<CompletableFuture<Outbox.Status>> sent = new ArrayList<>();
+    private final Map<Outbox.Status, Integer> statuses = new EnumMap<>(Outbox.Status.class);
+    private volatile boolean canceled;
+
+    /**
+     * Create a new task
+     *
+     * @param action  The action that was taken
+     * @param batches Send the action for a batch of issues, returning the futures
+     *                for the status after the first attempt to send the action for
+     *                each issue (see {@link Outbox#submit})
+     */
+    BulkActionTask(IssueAction action, List<Supplier<List<CompletableFuture<Outbox.Status>>>> batches) {
+        super(tr("Marking issues as {0}", action.getDisplayName()), false);
+        this.action = action;
+        this.batches = batches;
+    }
+
+    @Override
+    protected void cancel() {
+        this.canceled = true;
+    }
+
+    @Override
+    protected void realRun() {
+        synchronized (this.sent) {
+            this.batches.forEach(batch -> this.sent.addAll(batch.get()));
+        }
+        progressMonitor.setTicksCount(this.sent.size());
+        for (CompletableFuture<Outbox.Status> future : this.sent) {
+            final Outbox.Status status = waitFor(future);
+            if (status == null) {
+                break;
+            }
+            synchronized (this.statuses) {
+                this.statuses.merge(status, 1, Integer::sum);
+            }
+            progressMonitor.worked(1);
+        }
+    }
+
+    private Outbox.Status waitFor(CompletableFuture<Outbox.Status> future) {
+        while (!this.canceled) {
+            try {
+                return future.get(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                Logging.trace(e);
+            } catch (ExecutionException e) {
+                Logging.error(e.getCause());
+                return Outbox.Status.FAILED;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Logging.debug(e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void finish() {
+        final int sentCount;
+        final int retrying;
+        final int failed;
+        final int total;
+        synchronized (this.sent) {
+            total = this.sent.size();
+        }
+        synchronized (this.statuses) {
+            sentCount = this.statuses.getOrDefault(Outbox.Status.SENT, 0);
+            retrying = this.statuses.getOrDefault(Outbox.Status.RETRYING, 0);
+            failed = this.statuses.getOrDefault(Outbox.Status.FAILED, 0);
+        }
+        // Issues that were not waited on, or whose action was replaced while being sent
+        final int sending = total - sentCount - retrying - failed;
+        if (sentCount == total) {
+            new Notification(trn("{0} issue was marked as {1}", "{0} issues were marked as {1}", sentCount,
+                    sentCount, this.action.getDisplayName())).setIcon(JOptionPane.INFORMATION_MESSAGE).show();
+        } else {
+            new Notification(tr("Marking issues as {0}: {1} sent, {2} still sending, {3} waiting to retry, {4} failed",
+                    this.action.getDisplayName(), sentCount, sending, retrying, failed))
+                            .setIcon(failed > 0 ? JOptionPane.ERROR_MESSAGE : JOptionPane.WARNING_MESSAGE)
+                            .setDuration(Notification.TIME_LONG).show();
+        }
+    }
+}
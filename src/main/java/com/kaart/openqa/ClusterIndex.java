@@ -0,0 +1,317 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.IBounds;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * A multi-resolution grid of the nodes in a dataset, for drawing clusters when
+ * the map is zoomed out. The cells of each level are the slippy map tiles of
+ * the same zoom. Each cell keeps the number of nodes in it for each error
+ * class. The grid is updated as nodes are added to or removed from the dataset
+ * (see {@link OpenQADataSet#addNodeListener}).
+ *
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+final class ClusterIndex<N extends OpenQANode<?>> implements OpenQADataSet.NodeListener<N> {
+    /** The highest level of the grid */
+    static final int MAX_LEVEL = 16;
+    /** The maximum latitude of web mercator tiles */
+    private static final double MAX_LAT = 85.05112877980659;
+
+    /**
+     * A snapshot of a cell of the grid
+     */
+    static final class Cluster {
+        private final int level;
+        private final int x;
+        private final int y;
+        private final int count;
+        private final double lat;
+        private final double lon;
+        private final String errorClass;
+
+        Cluster(int level, int x, int y, int count, double lat, double lon, String errorClass) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.count = count;
+            this.lat = lat;
+            this.lon = lon;
+            this.errorClass = errorClass;
+        }
+
+        /**
+         * Get the number of nodes in the cluster
+         *
+         * @return The number of nodes
+         */
+        int getCount() {
+            return this.count;
+        }
+
+        /**
+         * Get the average latitude of the nodes in the cluster
+         *
+         * @return The latitude
+         */
+        double getLat() {
+            return this.lat;
+        }
+
+        /**
+         * Get the average longitude of the nodes in the cluster
+         *
+         * @return The longitude
+         */
+        double getLon() {
+            return this.lon;
+        }
+
+        /**
+         * Get the most common error class in the cluster
+         *
+         * @return The error class, or {@code null} if the nodes have no error class
+         */
+        String getErrorClass() {
+            return this.errorClass;
+        }
+
+        /**
+         * Get the bounds of the grid cell of the cluster
+         *
+         * @return The bounds
+         */
+        Bounds getBounds() {
+            return new Bounds(tileYToLat(this.y + 1, this.level), tileXToLon(this.x, this.level),
+                    tileYToLat(this.y, this.level), tileXToLon(this.x + 1, this.level));
+        }
+    }
+
+    /**
+     * A cell of the grid
+     */
+    private static final class Cell {
+        private int count;
+        private double latSum;
+        private double lonSum;
+        private String[] classes = new String[1];
+        private int[] classCounts = new int[1];
+
+        void update(double lat, double lon, String errorClass, int delta) {
+            this.count += delta;
+            this.latSum += delta * lat;
+            this.lonSum += delta * lon;
+            for (int i = 0; i < this.classes.length; i++) {
+                if (this.classCounts[i] > 0 && this.classes[i].equals(errorClass)) {
+                    this.classCounts[i] += delta;
+                    return;
+                }
+            }
+            if (delta < 0) {
+                return;
+            }
+            int free = 0;
+            while (free < this.classes.length && this.classCounts[free] > 0) {
+                free++;
+            }
+            if (free == this.classes.length) {
+                this.classes = Arrays.copyOf(this.classes, free * 2);
+                this.classCounts = Arrays.copyOf(this.classCounts, free * 2);
+            }
+            this.classes[free] = errorClass;
+            this.classCounts[free] = delta;
+        }
+
+        String getErrorClass() {
+            int max = 0;
+            String errorClass = null;
+            for (int i = 0; i < this.classes.length; i++) {
+                if (this.classCounts[i] > max) {
+                    max = this.classCounts[i];
+                    errorClass = this.classes[i];
+                }
+            }
+            return errorClass;
+        }
+    }
+
+    /**
+     * Where a node was counted, so that it is removed from the same cells and
+     * class even if it changed since
+     */
+    private static final class Placement {
+        private final double lat;
+        private final double lon;
+        private final String errorClass;
+
+        Placement(double lat, double lon, String errorClass) {
+            this.lat = lat;
+            this.lon = lon;
+            this.errorClass = errorClass;
+        }
+    }
+
+    private final Function<N, String> classifier;
+    /** The cells for each level, keyed by {@code x << 32 | y} */
+    private final List<Map<Long, Cell>> levels = new ArrayList<>(MAX_LEVEL + 1);
+    /** The nodes in the grid. Nodes with the same identifier may be counted separately. */
+    private final Map<N, Placement> placements = new IdentityHashMap<>();
+
+    /**
+     * Create a new index
+     *
+     * @param classifier The function to get the error class of a node
+     */
+    ClusterIndex(Function<N, String> classifier) {
+        this.classifier = classifier;
+        for (int level = 0; level <= MAX_LEVEL; level++) {
+            this.levels.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    public synchronized void nodeAdded(N node) {
+        // Don't count a node twice
+        remove(node);
+        final String errorClass = this.classifier.apply(node);
+        final Placement placement = new Placement(node.lat(), node.lon(), errorClass == null ? "" : errorClass);
+        this.placements.put(node, placement);
+        update(placement, 1);
+    }
+
+    @Override
+    public synchronized void nodeRemoved(N node) {
+        remove(node);
+    }
+
+    @Override
+    public synchronized void nodeChanged(N node) {
+        if (this.placements.containsKey(node)) {
+            nodeAdded(node);
+        }
+    }
+
+    @Override
+    public synchronized void cleared() {
+        this.levels.forEach(Map::clear);
+        this.placements.clear();
+    }
+
+    private void remove(N node) {
+        final Placement placement = this.placements.remove(node);
+        if (placement != null) {
+            update(placement, -1);
+        }
+    }
+
+    private void update(Placement placement, int delta) {
+        final int x = lonToTileX(placement.lon, MAX_LEVEL);
+        final int y = latToTileY(placement.lat, MAX_LEVEL);
+        for (int level = MAX_LEVEL; level >= 0; level--) {
+            final int shift = MAX_LEVEL - level;
+            final long key = getKey(x >> shift, y >> shift);
+            final Map<Long, Cell> cells = this.levels.get(level);
+            final Cell cell = delta > 0 ? cells.computeIfAbsent(key, k -> new Cell()) : cells.get(key);
+            if (cell == null) {
+                continue;
+            }
+            cell.update(placement.lat, placement.lon, placement.errorClass, delta);
+            if (cell.count <= 0) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the clusters in an area
+     *
+     * @param level The level of the grid
+     * @param area  The area to get the clusters for
+     * @return The clusters
+     */
+    synchronized Collection<Cluster> getClusters(int level, IBounds area) {
+        final int minX = lonToTileX(area.getMinLon(), level);
+        final int maxX = lonToTileX(area.getMaxLon(), level);
+        final int minY = latToTileY(area.getMaxLat(), level);
+        final int maxY = latToTileY(area.getMinLat(), level);
+        final Map<Long, Cell> cells = this.levels.get(level);
+        final List<Cluster> clusters = new ArrayList<>();
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) < cells.size()) {
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    final Cell cell = cells.get(getKey(x, y));
+                    if (cell != null) {
+                        clusters.add(toCluster(level, x, y, cell));
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                final int x = (int) (entry.getKey() >>> 32);
+                final int y = (int) (long) entry.getKey();
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    clusters.add(toCluster(level, x, y, entry.getValue()));
+                }
+            }
+        }
+        return clusters;
+    }
+
+    private static Cluster toCluster(int level, int x, int y, Cell cell) {
+        return new Cluster(level, x, y, cell.count, cell.latSum / cell.count, cell.lonSum / cell.count,
+                cell.getErrorClass());
+    }
+
+    /**
+     * Get the level of the grid to use for a map scale
+     *
+     * @param degreesPerPixel The longitude degrees per pixel of the map
+     * @param cellPixels      The size of the cells on the screen
+     * @return The level, clamped to {@code [0, MAX_LEVEL]}
+     */
+    static int getLevel(double degreesPerPixel, int cellPixels) {
+        final double level = Math.floor(Math.log(360 / (cellPixels * degreesPerPixel)) / Math.log(2));
+        return (int) Math.max(0, Math.min(MAX_LEVEL, level));
+    }
+
+    private static long getKey(int x, int y) {
+        return ((long) x << 32) | y;
+    }
+
+    private static int lonToTileX(double lon, int level) {
+        final int n = 1 << level;
+        return clamp((int) Math.floor((lon + 180) / 360 * n), n);
+    }
+
+    private static int latToTileY(double lat, int level) {
+        final int n = 1 << level;
+        final double latRad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        return clamp((int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n), n);
+    }
+
+    private static double tileXToLon(int x, int level) {
+        return x / (double) (1 << level) * 360 - 180;
+    }
+
+    private static double tileYToLat(int y, int level) {
+        final double mercator = Math.PI - 2 * Math.PI * y / (1 << level);
+        return Math.toDegrees(Math.atan(Math.sinh(mercator)));
+    }
+
+    private static int clamp(int tile, int n) {
+        return Math.max(0, Math.min(n - 1, tile));
+    }
+}
@@ -0,0 +1,59 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import javax.swing.Timer;
+
+import java.util.function.Consumer;
+
+/**
+ * Handle only the last of a burst of events. The first event starts a timer,
+ * and when it fires the last event that came in is handled, so events are
+ * handled at most once per delay. This should only be used on the EDT.
+ *
+ * @param <T> The event type
+ * @author Taylor Smock
+ */
+final class Coalescer<T> {
+    private final Timer timer;
+    private T latest;
+
+    /**
+     * Create a new coalescer
+     *
+     * @param delay   The delay (ms) between the first event and handling the last
+     *                event
+     * @param handler The handler for the last event
+     */
+    Coalescer(int delay, Consumer<T> handler) {
+        this.timer = new Timer(delay, e -> handler.accept(this.latest));
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Add an event
+     *
+     * @param event The event
+     */
+    void post(T event) {
+        this.latest = event;
+        if (!this.timer.isRunning()) {
+            this.timer.start();
+        }
+    }
+
+    /**
+     * Get the last event
+     *
+     * @return The last event, or {@code null} if there was none
+     */
+    T getLatest() {
+        return this.latest;
+    }
+
+    /**
+     * Stop handling the events that came in since the last time they were handled
+     */
+    void stop() {
+        this.timer.stop();
+    }
+}
@@ -9,37 +9,53 @@ import javax.swing.Action;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.Icon;
-import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JComponent;
 import javax.swing.JEditorPane;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JWindow;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.plaf.basic.BasicHTML;
 import javax.swing.text.View;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -49,6 +65,7 @@ import org.openstreetmap.josm.actions.mapmode.SelectLassoAction;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Data;
 import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.BBox;
 import org.openstreetmap.josm.data.osm.DataSelectionListener;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -70,6 +87,7 @@ import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.gui.widgets.HtmlPanel;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ColorHelper;
@@ -80,7 +98,9 @@ import org.openstreetmap.josm.tools.bugreport.BugReport;
 import org.openstreetmap.josm.tools.bugreport.ReportedException;
 
 import com.kaart.openqa.profiles.GenericInformation;
+import com.kaart.openqa.profiles.GenericInformation.IssueAction;
 import com.kaart.openqa.profiles.OpenQANode;
+import com.kaart.openqa.profiles.Outbox;
 import com.kaart.openqa.profiles.keepright.KeepRightInformation;
 import com.kaart.openqa.profiles.osmose.OsmoseInformation;
 
@@ -93,6 +113,7 @@ public class ErrorLayer extends AbstractModifiableLayer
     private static final class DataSetPairs<I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> {
         private final D dataset;
         private final GenericInformation<I, N, D> genericInformation;
+        private final ClusterIndex<N> clusters;
 
         /**
          * Constructs a new {@code Pair}.
@@ -104,6 +125,8 @@ public class ErrorLayer extends AbstractModifiableLayer
             Objects.requireNonNull(genericInformation);
             this.genericInformation = genericInformation;
             this.dataset = dataset == null ? genericInformation.createNewDataSet() : dataset;
+            this.clusters = new ClusterIndex<>(genericInformation::getError);
+            this.dataset.addNodeListener(this.clusters);
         }
 
         /**
@@ -124,6 +147,22 @@ public class ErrorLayer extends AbstractModifiableLayer
             return this.genericInformation;
         }
 
+        /**
+         * Get the clusters of the dataset for this pair
+         *
+         * @return The clusters
+         */
+        public ClusterIndex<N> clusters() {
+            return this.clusters;
+        }
+
+        /**
+         * Stop updating the clusters of this pair
+         */
+        public void destroy() {
+            this.dataset.removeNodeListener(this.clusters);
+        }
+
         /**
          * Update the dataset of this pair
          *
@@ -152,20 +191,61 @@ public class ErrorLayer extends AbstractModifiableLayer
      */
     private static final Pattern SENTENCE_MARKS_EASTERN = Pattern.compile("(\\u3002)([\\p{L}\\p{IsPunct}])");
 
+    /**
+     * The preference key for the zoom level (as for slippy map tiles) below which
+     * issues are drawn as clusters. A negative zoom disables clustering.
+     */
+    public static final String PREF_CLUSTER_ZOOM = OpenQA.PREF_PREFIX.concat("clusterZoom");
+    private static final int DEFAULT_CLUSTER_ZOOM = 14;
+    /** The size of the slippy map tiles, for converting the map scale to a zoom level */
+    private static final int TILE_SIZE = 256;
+    /** The size (px) of the grid cells that issues are clustered in */
+    private static final int CLUSTER_CELL_SIZE = 64;
+    /** The color of the count badge of clusters */
+    private static final Color CLUSTER_BADGE_COLOR = new Color(200, 40, 40, 220);
+
     private static final String STRING_ACTION_TAKEN = "actionTaken";
 
+    /** The color of the marker for issues whose icon is still being loaded */
+    private static final Color PLACEHOLDER_COLOR = new Color(255, 200, 0, 200);
+
+    /** The delay (ms) between a background refresh of error data and updating the layer */
+    private static final int REFRESH_DELAY = 1000;
+
+    /** The frame interval (ms) for handling mouse movement */
+    private static final int HOVER_DELAY = 1000 / 60;
+
     final List<DataSetPairs<?, ?, ?>> dataSets = new ArrayList<>(2);
     final HashMap<GenericInformation<?, ?, ?>, Boolean> enabledSources = new HashMap<>();
 
     private OpenQANode<?> displayedNode;
+    /** The nodes whose additional information is being loaded for the user */
+    private final Set<OpenQANode<?>> pendingInformation = ConcurrentHashMap.newKeySet();
+    /** The nodes whose additional information is being prefetched */
+    private final Map<OpenQANode<?>, CompletableFuture<Boolean>> pendingPrefetches = new ConcurrentHashMap<>();
+    /** Fetch the additional information of the issues in view while the map view is idle */
+    private final Prefetcher prefetcher = new Prefetcher(this::getPrefetchCandidates);
     private JScrollPane displayedPanel;
     private JWindow displayedWindow;
     private PaintWindow window;
+    /** Incremented when the markers change, so that the paint buffer is redrawn */
+    private final AtomicLong markersVersion = new AtomicLong();
+    /** The clusters that were last painted, and the area they cover */
+    private final Map<Rectangle, Bounds> paintedClusters = new HashMap<>();
 
     private boolean updateCanceled;
 
     private final List<DataSet> listeningDataSets = new ArrayList<>();
 
+    /** Handle the last mouse movement at most once per frame */
+    private final Coalescer<Point> hover = new Coalescer<>(HOVER_DELAY, this::updateHover);
+    private OpenQANode<?> hoveredNode;
+    /** Update the layer once after a burst of background refreshes */
+    private final Timer refreshTimer = new Timer(REFRESH_DELAY, e -> OpenQALayerChangeListener.updateOpenQALayers());
+    private final OpenQACache.RefreshListener refreshListener = this::dataRefreshed;
+    /** The icons for painting, kept while the layer exists */
+    private final IconAtlas iconAtlas = new IconAtlas();
+
     /**
      * Create a new ErrorLayer using a class that extends {@code GenericInformation}
      *
@@ -174,6 +254,9 @@ public class ErrorLayer extends AbstractModifiableLayer
         super(tr("{0} Layers", OpenQA.NAME));
         hookUpMapViewer();
         MainApplication.getLayerManager().addAndFireLayerChangeListener(this);
+        refreshTimer.setRepeats(false);
+        OpenQACache.addRefreshListener(refreshListener);
+        prefetcher.enable();
     }
 
     /**
@@ -244,7 +327,21 @@ public class ErrorLayer extends AbstractModifiableLayer
             }
         }
         progressMonitor.finishTask();
-        invalidate();
+        markersChanged();
+        // There may be new issues in view
+        GuiHelper.runInEDT(prefetcher::restart);
+    }
+
+    /**
+     * Tell the datasets of this layer that nodes changed, e.g. after an action
+     * was taken on them
+     *
+     * @param nodes The nodes that changed
+     */
+    public void nodesChanged(Collection<? extends OpenQANode<?>> nodes) {
+        for (DataSetPairs<?, ?, ?> entry : dataSets) {
+            entry.dataset().nodesChanged(nodes);
+        }
     }
 
     /**
@@ -252,6 +349,7 @@ public class ErrorLayer extends AbstractModifiableLayer
      */
     public void hookUpMapViewer() {
         MainApplication.getMap().mapView.addMouseListener(this);
+        MainApplication.getMap().mapView.addMouseMotionListener(this);
         addListeners();
     }
 
@@ -259,9 +357,31 @@ public class ErrorLayer extends AbstractModifiableLayer
         dataSets.forEach(pair -> pair.dataset.addHighlightUpdateListener(this));
     }
 
+    /**
+     * Update the layer when stale error data has been refreshed
+     *
+     * @param url The URL that was refreshed
+     */
+    private void dataRefreshed(String url) {
+        boolean refreshed = false;
+        for (DataSetPairs<?, ?, ?> entry : dataSets) {
+            // The refreshed data would otherwise not be downloaded again
+            refreshed |= entry.genericInformation().dataRefreshed(url);
+        }
+        if (refreshed) {
+            GuiHelper.runInEDT(refreshTimer::restart);
+        }
+    }
+
     @Override
     public synchronized void destroy() {
         MainApplication.getMap().mapView.removeMouseListener(this);
+        MainApplication.getMap().mapView.removeMouseMotionListener(this);
+        hover.stop();
+        hoveredNode = null;
+        OpenQACache.removeRefreshListener(refreshListener);
+        refreshTimer.stop();
+        prefetcher.disable();
         for (OpenQADataSet<?, ?> ds : dataSets.stream().map(pair -> pair.dataset).collect(Collectors.toList())) {
             try {
                 if (ds == null)
@@ -271,11 +391,23 @@ public class ErrorLayer extends AbstractModifiableLayer
                 Logging.error(e);
             }
         }
+        dataSets.forEach(DataSetPairs::destroy);
         hideNodeWindow();
+        iconAtlas.clear();
+        window = null;
         MainApplication.getLayerManager().removeLayerChangeListener(this);
         super.destroy();
     }
 
+    /**
+     * Redraw the markers of this layer, e.g. after the issues or their icons
+     * changed. {@link #invalidate()} only repaints the selection and the popup.
+     */
+    public void markersChanged() {
+        markersVersion.incrementAndGet();
+        invalidate();
+    }
+
     @Override
     public boolean isModified() {
         for (DataSetPairs<?, ?, ?> ds : dataSets) {
@@ -300,6 +432,16 @@ public class ErrorLayer extends AbstractModifiableLayer
     private class PaintWindow implements DataSelectionListener, Runnable {
         Graphics2D g;
         MapView mv;
+        /** The painted markers, drawn to the map view as a single image */
+        private BufferedImage buffer;
+        /** The previous buffer, reused when the map view is moved */
+        private BufferedImage spareBuffer;
+        /** The state of the map view and the layer that the buffer was painted for */
+        private EastNorth bufferCenter;
+        private double bufferMapScale;
+        private double bufferDisplayScale;
+        private long bufferVersion;
+        private int bufferClusterLevel;
 
         public PaintWindow(Graphics2D g, MapView mv) {
             this.g = g;
@@ -316,36 +458,247 @@ public class ErrorLayer extends AbstractModifiableLayer
 
         @Override
         public void run() {
-            for (DataSetPairs<?, ?, ?> type : dataSets) {
-                if (enabledSources.containsKey(type.genericInformation())
-                        && Boolean.TRUE.equals(!enabledSources.get(type.genericInformation())))
-                    continue;
-                realRun(type);
+            final ImageSizes size = ImageProvider.ImageSizes.LARGEICON;
+            final Graphics2D screen = g;
+            final int width = mv.getWidth();
+            final int height = mv.getHeight();
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            try {
+                updateBuffer(screen, width, height, size);
+            } finally {
+                g = screen;
             }
+            screen.drawImage(buffer, 0, 0, width, height, null);
+            // The selection changes without a change of the markers, so it is not buffered
+            createNodeWindow(screen, mv, size);
         }
 
-        private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void realRun(DataSetPairs<I, N, D> type) {
-            final ImageSizes size = ImageProvider.ImageSizes.LARGEICON;
+        /**
+         * Bring the buffer up to date with the map view. The buffer is only redrawn
+         * when the markers changed (see {@link #markersChanged()}) or the scale or
+         * size of the map view changed. When the map view was only moved, the buffer is shifted, and only
+         * the newly exposed strips are drawn.
+         *
+         * @param screen The graphics the buffer will be drawn on
+         * @param width  The width of the map view
+         * @param height The height of the map view
+         * @param size   The size of the icons
+         */
+        private void updateBuffer(Graphics2D screen, int width, int height, ImageSizes size) {
+            // Only HiDPI scaling matters, the map is drawn in screen coordinates
+            final double displayScale = Math.max(1, Math.abs(screen.getTransform().getScaleX()));
+            final int bufferWidth = (int) Math.ceil(width * displayScale);
+            final int bufferHeight = (int) Math.ceil(height * displayScale);
+            final long version = markersVersion.get();
+            final double mapScale = mv.getScale();
+            final EastNorth center = mv.getCenter();
+            final double degreesPerPixel = mv.getLatLonBounds(new Rectangle(width, height)).getWidth() / width;
+            final int clusterZoom = Config.getPref().getInt(PREF_CLUSTER_ZOOM, DEFAULT_CLUSTER_ZOOM);
+            final int clusterLevel = clusterZoom >= 0 && ClusterIndex.getLevel(degreesPerPixel, TILE_SIZE) < clusterZoom
+                    ? ClusterIndex.getLevel(degreesPerPixel, CLUSTER_CELL_SIZE)
+                    : -1;
+            final boolean valid = buffer != null && buffer.getWidth() == bufferWidth
+                    && buffer.getHeight() == bufferHeight && bufferDisplayScale == displayScale
+                    && bufferMapScale == mapScale && bufferVersion == version && bufferClusterLevel == clusterLevel;
+            if (valid && center.equals(bufferCenter)) {
+                return;
+            }
+            // Offset of the buffer contents in buffer pixels
+            final long dx = valid ? Math.round((bufferCenter.east() - center.east()) / mapScale * displayScale) : 0;
+            final long dy = valid ? Math.round((center.north() - bufferCenter.north()) / mapScale * displayScale) : 0;
+            if (valid && dx == 0 && dy == 0) {
+                // The buffer is off by less than a pixel, which does not need to be drawn again
+                return;
+            }
+            if (!valid || clusterLevel >= 0 || Math.abs(dx) >= bufferWidth || Math.abs(dy) >= bufferHeight) {
+                // Clusters are few, and the clickable areas must all be known, so they are always redrawn
+                if (buffer == null || buffer.getWidth() != bufferWidth || buffer.getHeight() != bufferHeight) {
+                    buffer = createBuffer(screen, bufferWidth, bufferHeight);
+                    spareBuffer = null;
+                }
+                synchronized (paintedClusters) {
+                    paintedClusters.clear();
+                }
+                paintArea(buffer, displayScale, new Rectangle2D.Double(0, 0, width, height), clusterLevel, size);
+                bufferCenter = center;
+            } else {
+                if (spareBuffer == null) {
+                    spareBuffer = createBuffer(screen, bufferWidth, bufferHeight);
+                }
+                final BufferedImage shifted = spareBuffer;
+                final Graphics2D shiftGraphics = shifted.createGraphics();
+                try {
+                    shiftGraphics.setComposite(AlphaComposite.Src);
+                    shiftGraphics.setColor(new Color(0, 0, 0, 0));
+                    shiftGraphics.fillRect(0, 0, bufferWidth, bufferHeight);
+                    shiftGraphics.drawImage(buffer, (int) dx, (int) dy, null);
+                } finally {
+                    shiftGraphics.dispose();
+                }
+                spareBuffer = buffer;
+                buffer = shifted;
+                // The strips are disjoint, so no marker is drawn twice over the same pixels
+                final double top = dy > 0 ? 0 : (bufferHeight + dy) / displayScale;
+                final double stripHeight = Math.abs(dy) / displayScale;
+                if (dy != 0) {
+                    paintArea(buffer, displayScale, new Rectangle2D.Double(0, top, width, stripHeight), -1, size);
+                }
+                if (dx != 0) {
+                    final double left = dx > 0 ? 0 : (bufferWidth + dx) / displayScale;
+                    final double stripTop = dy > 0 ? stripHeight : 0;
+                    paintArea(buffer, displayScale, new Rectangle2D.Double(left, stripTop, Math.abs(dx) / displayScale,
+                            height - stripHeight), -1, size);
+                }
+                // Keep the center that the buffer actually shows, so rounding errors do not add up
+                bufferCenter = bufferCenter.add(-dx / displayScale * mapScale, dy / displayScale * mapScale);
+            }
+            bufferDisplayScale = displayScale;
+            bufferMapScale = mapScale;
+            bufferVersion = version;
+            bufferClusterLevel = clusterLevel;
+        }
+
+        private BufferedImage createBuffer(Graphics2D screen, int width, int height) {
+            final GraphicsConfiguration configuration = screen.getDeviceConfiguration();
+            return configuration != null
+                    ? configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        /**
+         * Clear and paint an area of the buffer
+         *
+         * @param image        The buffer
+         * @param displayScale The HiDPI scale of the buffer
+         * @param area         The area to paint, in map view coordinates
+         * @param clusterLevel The level of the clusters to paint, or {@code -1} to
+         *                     paint the issues
+         * @param size         The size of the icons
+         */
+        private void paintArea(BufferedImage image, double displayScale, Rectangle2D area, int clusterLevel,
+                ImageSizes size) {
+            final Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.scale(displayScale, displayScale);
+                graphics.clip(area);
+                graphics.setComposite(AlphaComposite.Clear);
+                graphics.fill(area);
+                graphics.setComposite(AlphaComposite.SrcOver);
+                g = graphics;
+                // Only paint the nodes that are visible, with a margin for icons that are partly visible
+                final Rectangle paintArea = area.getBounds();
+                paintArea.grow(size.getAdjustedWidth() / 2 + 1, size.getAdjustedHeight() / 2 + 1);
+                final Bounds visibleBounds = mv.getLatLonBounds(paintArea);
+                final BBox visible = visibleBounds.toBBox();
+                for (DataSetPairs<?, ?, ?> type : dataSets) {
+                    if (enabledSources.containsKey(type.genericInformation())
+                            && Boolean.TRUE.equals(!enabledSources.get(type.genericInformation())))
+                        continue;
+                    if (clusterLevel >= 0) {
+                        paintClusters(type, visibleBounds, clusterLevel, size);
+                    } else {
+                        realRun(type, visible, size);
+                    }
+                }
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        /**
+         * Paint the clusters of issues, with the icon of the most common error and
+         * the number of issues in the cluster
+         *
+         * @param type    The dataset and information to paint
+         * @param visible The visible area
+         * @param level   The level of the cluster grid
+         * @param size    The size of the icons
+         */
+        private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void paintClusters(
+                DataSetPairs<I, N, D> type, Bounds visible, int level, ImageSizes size) {
+            final GenericInformation<I, N, D> info = type.genericInformation();
+            final IconAtlas.Page icons = iconAtlas.getPage(g, size);
+            for (ClusterIndex.Cluster cluster : type.clusters().getClusters(level, visible)) {
+                final Point p = mv.getPoint(new LatLon(cluster.getLat(), cluster.getLon()));
+                final IconAtlas.Sprite icon = cluster.getErrorClass() == null || cluster.getErrorClass().isEmpty()
+                        ? null
+                        : icons.get(g, info, cluster.getErrorClass());
+                if (icon == null) {
+                    paintPlaceholder(p, size);
+                } else {
+                    icon.draw(g, p.x, p.y);
+                }
+                if (cluster.getCount() > 1) {
+                    paintBadge(p, size, cluster.getCount());
+                }
+                final Rectangle area = new Rectangle(p.x - size.getAdjustedWidth() / 2,
+                        p.y - size.getAdjustedHeight() / 2, size.getAdjustedWidth(), size.getAdjustedHeight());
+                synchronized (paintedClusters) {
+                    paintedClusters.put(area, cluster.getBounds());
+                }
+            }
+        }
+
+        /**
+         * Paint the number of issues in a cluster on the corner of its icon
+         *
+         * @param p     The location of the cluster
+         * @param size  The size of the icon
+         * @param count The number of issues in the cluster
+         */
+        private void paintBadge(Point p, ImageSizes size, int count) {
+            final String text = count < 1000 ? Integer.toString(count)
+                    : count < 1_000_000 ? (count / 1000) + "k" : (count / 1_000_000) + "M";
+            final FontMetrics metrics = g.getFontMetrics();
+            final int diameter = Math.max(metrics.getHeight(), metrics.stringWidth(text) + 4);
+            final int x = p.x + size.getAdjustedWidth() / 2 - diameter / 2;
+            final int y = p.y - size.getAdjustedHeight() / 2 - diameter / 2;
+            g.setColor(CLUSTER_BADGE_COLOR);
+            g.fillOval(x, y, diameter, diameter);
+            g.setColor(Color.WHITE);
+            g.drawString(text, x + (diameter - metrics.stringWidth(text)) / 2,
+                    y + (diameter - metrics.getHeight()) / 2 + metrics.getAscent());
+        }
+
+        private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void realRun(DataSetPairs<I, N, D> type,
+                BBox visible, ImageSizes size) {
             D ds = type.dataset();
-            for (N node : ds.getNodes()) {
+            final GenericInformation<I, N, D> info = type.genericInformation();
+            final IconAtlas.Page icons = iconAtlas.getPage(g, size);
+            for (N node : ds.searchNodes(visible)) {
                 Point p = mv.getPoint(node);
-                String error = type.genericInformation().getError(node);
-                final ImageIcon icon;
+                String error = info.getError(node);
                 // See #22249
                 if (error == null) {
-                    icon = ImageProvider.createBlankIcon(ImageSizes.MAP);
-                    new Notification(tr("Image Error: {0}: {1}", type.genericInformation().getName(),
+                    new Notification(tr("Image Error: {0}: {1}", info.getName(),
                             node.getKeys().entrySet().stream()
                                     .map(entry -> String.join("=", entry.getKey(), entry.getValue()))
                                     .collect(Collectors.joining(", ")))).show();
+                    continue;
+                }
+                final IconAtlas.Sprite icon = icons.get(g, info, error);
+                if (icon == null) {
+                    paintPlaceholder(p, size);
                 } else {
-                    icon = type.genericInformation().getIcon(error, size);
+                    icon.draw(g, p.x, p.y);
                 }
-                int width = icon.getIconWidth();
-                int height = icon.getIconHeight();
-                g.drawImage(icon.getImage(), p.x - (width / 2), p.y - (height / 2), MainApplication.getMap().mapView);
             }
-            createNodeWindow(g, mv, size);
+        }
+
+        /**
+         * Paint a marker for a node whose icon is still being loaded
+         *
+         * @param p    The location of the node
+         * @param size The size of the icon
+         */
+        private void paintPlaceholder(Point p, ImageSizes size) {
+            final int diameter = Math.max(4, size.getAdjustedWidth() / 2);
+            g.setColor(PLACEHOLDER_COLOR);
+            g.fillOval(p.x - diameter / 2, p.y - diameter / 2, diameter, diameter);
+            g.setColor(Color.DARK_GRAY);
+            g.drawOval(p.x - diameter / 2, p.y - diameter / 2, diameter, diameter);
         }
 
         private void createNodeWindow(Graphics2D g, MapView mv, ImageSizes size) {
@@ -440,9 +793,8 @@ public class ErrorLayer extends AbstractModifiableLayer
 
             displayedWindow.pack();
             displayedWindow.setLocation(pTooltip);
+            // The popup is shown again when the node is moved back into view
             displayedWindow.setVisible(mv.contains(p));
-            if (!mv.contains(p))
-                hideNodeWindow();
         }
 
         private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void paintSelectedNode(
@@ -545,6 +897,108 @@ public class ErrorLayer extends AbstractModifiableLayer
         }
     }
 
+    /**
+     * Fetch the additional information of a node in the background, unless it is
+     * already being fetched. A prefetch of the node that has not started yet is
+     * dropped, so that the node does not wait behind the other prefetches.
+     *
+     * @param entry The dataset and information of the node
+     * @param node  The node
+     * @return The future for the fetch
+     */
+    private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> CompletableFuture<Boolean>
+            fetchAdditionalInformation(DataSetPairs<I, N, D> entry, N node) {
+        if (!pendingInformation.add(node)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        final CompletableFuture<Boolean> prefetch = pendingPrefetches.remove(node);
+        if (prefetch != null) {
+            prefetch.cancel(false);
+        }
+        return entry.genericInformation().cacheAdditionalInformationAsync(node, false)
+                .whenComplete((result, throwable) -> {
+                    pendingInformation.remove(node);
+                    if (throwable != null) {
+                        Logging.error(throwable);
+                    }
+                    GuiHelper.runInEDT(() -> additionalInformationLoaded(node));
+                });
+    }
+
+    /**
+     * Prefetch the additional information of a node, unless it is already being
+     * fetched
+     *
+     * @param entry The dataset and information of the node
+     * @param node  The node
+     * @return The future for the prefetch
+     */
+    private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> CompletableFuture<Boolean>
+            prefetchAdditionalInformation(DataSetPairs<I, N, D> entry, N node) {
+        if (pendingInformation.contains(node) || pendingPrefetches.containsKey(node)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        final CompletableFuture<Boolean> prefetch = entry.genericInformation().cacheAdditionalInformationAsync(node,
+                true);
+        pendingPrefetches.put(node, prefetch);
+        prefetch.whenComplete((result, throwable) -> pendingPrefetches.remove(node, prefetch));
+        return prefetch;
+    }
+
+    /**
+     * Get the issues in view that still need their additional information
+     *
+     * @return The issues, with their distance from the mouse
+     */
+    private List<Prefetcher.Candidate> getPrefetchCandidates() {
+        final List<Prefetcher.Candidate> candidates = new ArrayList<>();
+        final MapView mapView = MainApplication.getMap() == null ? null : MainApplication.getMap().mapView;
+        if (mapView == null || !isVisible() || mapView.getWidth() <= 0 || mapView.getHeight() <= 0) {
+            return candidates;
+        }
+        synchronized (paintedClusters) {
+            // There are too many issues in view when they are clustered
+            if (!paintedClusters.isEmpty()) {
+                return candidates;
+            }
+        }
+        final Rectangle view = new Rectangle(mapView.getWidth(), mapView.getHeight());
+        final Point hoverPoint = hover.getLatest();
+        final Point mouse = hoverPoint != null && view.contains(hoverPoint) ? hoverPoint
+                : new Point(view.width / 2, view.height / 2);
+        final BBox visible = mapView.getLatLonBounds(view).toBBox();
+        for (DataSetPairs<?, ?, ?> entry : dataSets) {
+            if (Boolean.TRUE.equals(enabledSources.getOrDefault(entry.genericInformation(), true))) {
+                addPrefetchCandidates(entry, mapView, visible, mouse, candidates);
+            }
+        }
+        return candidates;
+    }
+
+    private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void addPrefetchCandidates(
+            DataSetPairs<I, N, D> entry, MapView mapView, BBox visible, Point mouse,
+            List<Prefetcher.Candidate> candidates) {
+        for (N node : entry.dataset().searchNodes(visible)) {
+            if (!pendingInformation.contains(node) && !pendingPrefetches.containsKey(node)
+                    && entry.genericInformation().needsAdditionalInformation(node)) {
+                candidates.add(new Prefetcher.Candidate(mapView.getPoint(node).distance(mouse),
+                        () -> prefetchAdditionalInformation(entry, node)));
+            }
+        }
+    }
+
+    /**
+     * Show the additional information of a node, if it is still selected
+     *
+     * @param node The node
+     */
+    private void additionalInformationLoaded(OpenQANode<?> node) {
+        if (displayedWindow != null && node.isSelected()) {
+            // The popup is recreated from the selected nodes when the layer is painted
+            hideNodeWindow();
+        }
+    }
+
     /**
      * Hide the displayedWindow of the error notes
      */
@@ -567,9 +1021,18 @@ public class ErrorLayer extends AbstractModifiableLayer
         if (!SwingUtilities.isLeftMouseButton(e)) {
             return;
         }
+        final Bounds cluster;
+        synchronized (paintedClusters) {
+            cluster = paintedClusters.entrySet().stream().filter(entry -> entry.getKey().contains(e.getPoint()))
+                    .map(Map.Entry::getValue).findFirst().orElse(null);
+        }
+        if (cluster != null) {
+            MainApplication.getMap().mapView.zoomTo(cluster);
+            return;
+        }
         DataSet ds = MainApplication.getLayerManager().getActiveDataSet();
         if (ds != null && !ds.isModified()) {
-            GenericInformation.addChangeSetTag(null, null);
+            GenericInformation.addChangeSetTag(null, (String) null);
         }
         new GetClosestNode(e).run();
     }
@@ -591,15 +1054,18 @@ public class ErrorLayer extends AbstractModifiableLayer
         private Map<GenericInformation<?, ?, ?>, List<OpenQANode<?>>> getClosestNode(Point mousePoint,
                 double snapDistance) {
             Map<GenericInformation<?, ?, ?>, List<OpenQANode<?>>> closestNodes = new HashMap<>();
+            final MapView mapView = MainApplication.getMap().mapView;
+            final int snap = (int) Math.ceil(snapDistance);
             for (DataSetPairs<?, ?, ?> entry : dataSets) {
                 GenericInformation<?, ?, ?> type = entry.genericInformation();
                 OpenQADataSet<?, ?> ds = entry.dataset();
                 if (ds == null)
                     continue;
+                // Only look at the nodes near the mouse, then check the actual distance
                 List<OpenQANode<?>> closestNode = new ArrayList<>();
-                for (OpenQANode<?> node : ds.getNodes()) {
-                    Point notePoint = MainApplication.getMap().mapView.getPoint(node);
-                    if (mousePoint.distance(notePoint) < snapDistance) {
+                for (OpenQANode<?> node : getNodesNear(ds, mousePoint, snap, snap,
+                        area -> mapView.getLatLonBounds(area).toBBox(), mapView::getPoint)) {
+                    if (mousePoint.distance(mapView.getPoint(node)) < snapDistance) {
                         closestNode.add(node);
                     }
                 }
@@ -618,13 +1084,13 @@ public class ErrorLayer extends AbstractModifiableLayer
 
         private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void getAdditionalInformation(
                 DataSetPairs<I, N, D> entry) {
-            boolean hasAdditionalInformation;
             D ds = entry.dataset();
             GenericInformation<I, N, D> type = entry.genericInformation();
+            // The popup is shown with what is known now, and updated as the information arrives
             for (N node : ds.getSelectedNodes()) {
-                hasAdditionalInformation = type.cacheAdditionalInformation(node);
-                if (!hasAdditionalInformation)
-                    break;
+                if (type.needsAdditionalInformation(node)) {
+                    fetchAdditionalInformation(entry, node);
+                }
             }
         }
 
@@ -674,6 +1140,8 @@ public class ErrorLayer extends AbstractModifiableLayer
         actions.add(LayerListDialog.getInstance().createDeleteLayerAction());
         actions.add(new LayerListPopup.InfoAction(this));
         actions.add(new ForceClear());
+        actions.add(new BulkAction(IssueAction.FIXED));
+        actions.add(new BulkAction(IssueAction.FALSE_POSITIVE));
         for (GenericInformation<?, ?, ?> type : enabledSources.keySet()) {
             actions.add(new ToggleSource(type));
         }
@@ -698,10 +1166,147 @@ public class ErrorLayer extends AbstractModifiableLayer
         @Override
         public void actionPerformed(ActionEvent e) {
             enabledSources.put(type, !enabledSources.get(type));
-            invalidate();
+            markersChanged();
         }
     }
 
+    /**
+     * Take an action on all issues in view. If issues are selected, only the
+     * issues in view of the same types are used.
+     */
+    private class BulkAction extends AbstractAction {
+        private static final long serialVersionUID = 6158829207386414322L;
+        private final IssueAction action;
+
+        BulkAction(IssueAction action) {
+            this.action = action;
+            new ImageProvider("dialogs", "validator").getResource().attachImageIcon(this, true);
+            putValue(SHORT_DESCRIPTION,
+                    tr("Mark the issues in view, or only those like the selected issues, as {0}",
+                            action.getDisplayName()));
+            putValue(NAME, tr("Mark issues in view as {0}", action.getDisplayName()));
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            final MapView mapView = MainApplication.getMap() == null ? null : MainApplication.getMap().mapView;
+            if (mapView == null) {
+                return;
+            }
+            final BBox visible = mapView.getLatLonBounds(new Rectangle(mapView.getWidth(), mapView.getHeight()))
+                    .toBBox();
+            final Set<String> errors = new HashSet<>();
+            for (DataSetPairs<?, ?, ?> entry : dataSets) {
+                addSelectedErrors(entry, errors);
+            }
+            final List<Runnable> marks = new ArrayList<>();
+            final List<Supplier<List<CompletableFuture<Outbox.Status>>>> sends = new ArrayList<>();
+            int count = 0;
+            for (DataSetPairs<?, ?, ?> entry : dataSets) {
+                if (Boolean.TRUE.equals(enabledSources.getOrDefault(entry.genericInformation(), true))) {
+                    count += addBatch(entry, visible, errors, marks, sends);
+                }
+            }
+            if (count == 0) {
+                new Notification(tr("There are no issues in view to mark as {0}", action.getDisplayName())).show();
+                return;
+            }
+            if (JOptionPane.showConfirmDialog(MainApplication.getMainFrame(),
+                    trn("Mark {0} issue as {1}?", "Mark {0} issues as {1}?", count, count, action.getDisplayName()),
+                    tr("Mark issues"), JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            // Update the issues now, and send the actions in the background
+            marks.forEach(Runnable::run);
+            // The buttons in the popup may be out of date
+            hideNodeWindow();
+            MainApplication.worker.submit(new BulkActionTask(action, sends));
+        }
+
+        private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void addSelectedErrors(
+                DataSetPairs<I, N, D> entry, Set<String> errors) {
+            for (N node : entry.dataset().getSelectedNodes()) {
+                errors.add(getErrorKey(entry.genericInformation(), node));
+            }
+        }
+
+        private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> int addBatch(DataSetPairs<I, N, D> entry,
+                BBox visible, Set<String> errors, List<Runnable> marks,
+                List<Supplier<List<CompletableFuture<Outbox.Status>>>> sends) {
+            final GenericInformation<I, N, D> info = entry.genericInformation();
+            final List<N> nodes = getBulkActionNodes(info, entry.dataset(), visible, action, errors);
+            if (!nodes.isEmpty()) {
+                marks.add(() -> info.markAction(nodes, action));
+                sends.add(() -> info.sendActions(nodes, action));
+            }
+            return nodes.size();
+        }
+    }
+
+    /**
+     * Find the issues near a point on the map view. Only the issues in the area
+     * around the point are looked at (see {@link OpenQADataSet#searchNodes(BBox)}).
+     *
+     * @param dataSet    The issues
+     * @param point      The point on the map view
+     * @param halfWidth  The maximum horizontal distance from the point
+     * @param halfHeight The maximum vertical distance from the point
+     * @param toArea     Get the area of a rectangle on the map view
+     * @param toPoint    Get the point of an issue on the map view
+     * @return The issues near the point, nearest first
+     */
+    static <I, N extends OpenQANode<I>> List<N> getNodesNear(OpenQADataSet<I, N> dataSet, Point point, int halfWidth,
+            int halfHeight, Function<Rectangle, BBox> toArea, Function<? super N, Point> toPoint) {
+        final BBox searchArea = toArea
+                .apply(new Rectangle(point.x - halfWidth, point.y - halfHeight, 2 * halfWidth, 2 * halfHeight));
+        final List<N> nodes = new ArrayList<>();
+        final Map<N, Double> distances = new HashMap<>();
+        for (N node : dataSet.searchNodes(searchArea)) {
+            final Point nodePoint = toPoint.apply(node);
+            if (Math.abs(nodePoint.x - point.x) <= halfWidth && Math.abs(nodePoint.y - point.y) <= halfHeight) {
+                nodes.add(node);
+                distances.put(node, nodePoint.distanceSq(point));
+            }
+        }
+        nodes.sort(Comparator.comparingDouble(distances::get));
+        return nodes;
+    }
+
+    /**
+     * Get the issues in an area that a bulk action applies to
+     *
+     * @param info    The source of the issues
+     * @param dataSet The issues of the source
+     * @param area    The area, usually the map view
+     * @param action  The action to take
+     * @param errors  The error types to include (see {@link #getErrorKey}), or an
+     *                empty set for all error types
+     * @return The issues that the action was not taken for yet
+     */
+    static <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> List<N> getBulkActionNodes(
+            GenericInformation<I, N, D> info, D dataSet, BBox area, IssueAction action, Set<String> errors) {
+        final List<N> nodes = new ArrayList<>();
+        for (N node : dataSet.searchNodes(area)) {
+            if (info.getActionTaken(node) != action && (errors.isEmpty() || errors.contains(getErrorKey(info, node)))) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Get the key for the error type of an issue
+     *
+     * @param info The source of the issue
+     * @param node The issue
+     * @return The key, which includes the source
+     */
+    static <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> String getErrorKey(
+            GenericInformation<I, N, D> info, N node) {
+        // Different sources may use the same error types
+        return info.getName() + ':' + info.getError(node);
+    }
+
     private class ForceClear extends AbstractAction {
         private static final long serialVersionUID = -4472400258489788312L;
 
@@ -715,12 +1320,14 @@ public class ErrorLayer extends AbstractModifiableLayer
         public void actionPerformed(ActionEvent e) {
             OpenQACache.clear();
             dataSets.forEach(this::forceClear);
+            markersChanged();
             OpenQALayerChangeListener.updateOpenQALayers();
         }
 
         private <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void forceClear(
                 DataSetPairs<I, N, D> entry) {
             D ds = entry.dataset();
+            entry.genericInformation().clearCoverage();
             D temporaryDataSet = entry.genericInformation().createNewDataSet();
             for (N osmPrimitive : ds.allPrimitives()) {
                 if (osmPrimitive.hasKey(STRING_ACTION_TAKEN)) {
@@ -757,7 +1364,7 @@ public class ErrorLayer extends AbstractModifiableLayer
     public String getToolTipText() {
         int size = 0;
         for (DataSetPairs<?, ?, ?> ds : dataSets) {
-            size += ds.dataset().getNodes().size();
+            size += ds.dataset().size();
         }
         return trn("{0} {1} note", "{0} {1} notes", size, size, OpenQA.NAME);
     }
@@ -780,6 +1387,7 @@ public class ErrorLayer extends AbstractModifiableLayer
                     dataSets.add(eEntry);
                 }
             }
+            markersChanged();
         }
     }
 
@@ -802,7 +1410,7 @@ public class ErrorLayer extends AbstractModifiableLayer
     public Object getInfoComponent() {
         int size = 0;
         for (DataSetPairs<?, ?, ?> ds : dataSets) {
-            size += ds.dataset().allPrimitives().size();
+            size += ds.dataset().size();
         }
         StringBuilder sb = new StringBuilder();
         sb.append(tr("Keep Right Layer")).append('\n').append(tr("Total notes")).append(' ').append(size);
@@ -836,25 +1444,67 @@ public class ErrorLayer extends AbstractModifiableLayer
 
     @Override
     public void mouseMoved(MouseEvent e) {
-        final BBox location = new BBox(MainApplication.getMap().mapView.getLatLon(e.getX(), e.getY()));
-        for (DataSetPairs<?, ?, ?> entry : this.dataSets) {
-            highlightUpdated(location, entry);
-        }
+        // Mouse events can come much faster than the screen updates, so only the last one for a frame is used
+        hover.post(e.getPoint());
     }
 
-    private static <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void highlightUpdated(BBox location,
-            DataSetPairs<I, N, D> entry) {
-        // FIXME
-        Collection<N> nodes = entry.dataset().searchNodes(location);
-
-        for (N node : nodes) {
-            entry.genericInformation().getNodeToolTip(node);
-            if (!node.hasKey(STRING_ACTION_TAKEN)) {
-                node.put(STRING_ACTION_TAKEN, "true");
+    /**
+     * Find the issue under the mouse, and prepare it if the mouse moved to
+     * another issue
+     *
+     * @param point The location of the mouse
+     */
+    private void updateHover(Point point) {
+        final MapView mapView = MainApplication.getMap() == null ? null : MainApplication.getMap().mapView;
+        if (point == null || mapView == null) {
+            return;
+        }
+        final boolean clustered;
+        synchronized (paintedClusters) {
+            clustered = !paintedClusters.isEmpty();
+        }
+        OpenQANode<?> hovered = null;
+        DataSetPairs<?, ?, ?> hoveredEntry = null;
+        if (!clustered) {
+            final ImageSizes size = ImageProvider.ImageSizes.LARGEICON;
+            final int halfWidth = size.getAdjustedWidth() / 2;
+            final int halfHeight = size.getAdjustedHeight() / 2;
+            double hoveredDistance = Double.MAX_VALUE;
+            for (DataSetPairs<?, ?, ?> entry : dataSets) {
+                if (!Boolean.TRUE.equals(enabledSources.getOrDefault(entry.genericInformation(), true))) {
+                    continue;
+                }
+                // Icons are centered on their issue, so only issues within half an icon of the mouse can be under it
+                final List<? extends OpenQANode<?>> near = getNodesNear(entry.dataset(), point, halfWidth, halfHeight,
+                        area -> mapView.getLatLonBounds(area).toBBox(), mapView::getPoint);
+                if (!near.isEmpty() && mapView.getPoint(near.get(0)).distanceSq(point) < hoveredDistance) {
+                    hovered = near.get(0);
+                    hoveredEntry = entry;
+                    hoveredDistance = mapView.getPoint(hovered).distanceSq(point);
+                }
+            }
+        }
+        if (hovered != hoveredNode) {
+            hoveredNode = hovered;
+            if (hovered != null) {
+                hoverChanged(hoveredEntry, hovered);
             }
         }
     }
 
+    /**
+     * Prepare an issue that the mouse moved to, so that it can be shown quickly
+     * when it is clicked
+     *
+     * @param entry The dataset and information of the issue
+     * @param node  The issue
+     */
+    @SuppressWarnings("unchecked")
+    private static <I, N extends OpenQANode<I>, D extends OpenQADataSet<I, N>> void hoverChanged(
+            DataSetPairs<I, N, D> entry, OpenQANode<?> node) {
+        entry.genericInformation().getNodeToolTip((N) node);
+    }
+
     @Override
     public void layerAdded(LayerAddEvent e) {
         if (e.getAddedLayer() instanceof OsmDataLayer) {
@@ -6,6 +6,7 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonString;
 import jakarta.json.JsonStructure;
 import jakarta.json.JsonValue;
@@ -27,6 +28,10 @@ import com.kaart.openqa.profiles.OpenQANode;
  * Reader that reads GeoJSON files. See
  * <a href="https://tools.ietf.org/html/rfc7946">RFC 7946</a> for more
  * information.
+ * <p>
+ * The features of a FeatureCollection are read from the parser events and
+ * added to the dataset one at a time, so the collection is never held in
+ * memory as a whole.
  *
  * @param <I> The id for the primitives
  * @param <N> The node type
@@ -79,12 +84,194 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
         while (parser.hasNext()) {
             Event event = parser.next();
             if (event == Event.START_OBJECT) {
-                parseRoot(parser.getObject());
+                parseRootStreaming();
             }
         }
         parser.close();
     }
 
+    /**
+     * Parse the root object. The features of a FeatureCollection are streamed,
+     * so that only a single feature is in memory at a time. Other root objects
+     * are small, so they are read as a whole.
+     */
+    private void parseRootStreaming() {
+        JsonObjectBuilder root = null;
+        boolean hasFeatures = false;
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                break;
+            } else if (event == Event.KEY_NAME) {
+                final String key = parser.getString();
+                event = parser.next();
+                if (FEATURES.equals(key) && event == Event.START_ARRAY) {
+                    hasFeatures = true;
+                    parseFeaturesStreaming();
+                } else {
+                    if (root == null) {
+                        root = Json.createObjectBuilder();
+                    }
+                    root.add(key, parser.getValue());
+                }
+            }
+        }
+        if (!hasFeatures && root != null) {
+            parseRoot(root.build());
+        }
+    }
+
+    private void parseFeaturesStreaming() {
+        while (parser.hasNext()) {
+            final Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                return;
+            } else if (event == Event.START_OBJECT) {
+                parseFeatureStreaming();
+            } else if (event == Event.START_ARRAY) {
+                parser.skipArray();
+            }
+        }
+    }
+
+    /**
+     * Parse a single feature from the parser events. Point geometries are
+     * decoded directly, other geometries are read as objects.
+     */
+    private void parseFeatureStreaming() {
+        Map<String, String> tags = null;
+        String geometryType = null;
+        double[] point = null;
+        JsonObject geometry = null;
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                break;
+            } else if (event != Event.KEY_NAME) {
+                continue;
+            }
+            final String key = parser.getString();
+            event = parser.next();
+            if (PROPERTIES.equals(key) && event == Event.START_OBJECT) {
+                tags = parsePropertiesStreaming();
+            } else if (GEOMETRY.equals(key) && event == Event.START_OBJECT) {
+                final JsonObjectBuilder other = Json.createObjectBuilder();
+                boolean hasOther = false;
+                while (parser.hasNext()) {
+                    event = parser.next();
+                    if (event == Event.END_OBJECT) {
+                        break;
+                    } else if (event != Event.KEY_NAME) {
+                        continue;
+                    }
+                    final String geometryKey = parser.getString();
+                    event = parser.next();
+                    if (TYPE.equals(geometryKey) && event == Event.VALUE_STRING) {
+                        geometryType = parser.getString();
+                    } else if (COORDINATES.equals(geometryKey) && event == Event.START_ARRAY) {
+                        point = parsePositionStreaming();
+                    } else {
+                        hasOther = true;
+                        other.add(geometryKey, parser.getValue());
+                    }
+                }
+                if (hasOther && geometryType != null) {
+                    // e.g. GeometryCollection
+                    geometry = other.add(TYPE, geometryType).build();
+                }
+            } else {
+                skipValue(event);
+            }
+        }
+        if (tags == null) {
+            tags = new TreeMap<>();
+        }
+        if (geometry != null) {
+            parseGeometry(tags, geometry);
+        } else if ("Point".equals(geometryType) && point != null) {
+            createNode(tags, point[1], point[0]);
+        } else if (geometryType != null) {
+            parseGeometry(tags, Json.createObjectBuilder().add(TYPE, geometryType).build());
+        }
+    }
+
+    /**
+     * Parse a position. The opening {@link Event#START_ARRAY} must have been read.
+     *
+     * @return The {@code [lon, lat]} of the position, or {@code null} if the
+     *         coordinates are not a single position
+     */
+    private double[] parsePositionStreaming() {
+        final double[] position = new double[2];
+        int index = 0;
+        boolean isPosition = true;
+        while (parser.hasNext()) {
+            final Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                break;
+            } else if (event == Event.VALUE_NUMBER) {
+                if (index < position.length) {
+                    position[index] = parser.getBigDecimal().doubleValue();
+                }
+                index++;
+            } else if (event == Event.START_ARRAY) {
+                // Not a point
+                isPosition = false;
+                parser.skipArray();
+            } else {
+                skipValue(event);
+            }
+        }
+        return isPosition && index >= position.length ? position : null;
+    }
+
+    /**
+     * Parse the properties of a feature. The opening {@link Event#START_OBJECT}
+     * must have been read.
+     *
+     * @return The tags for the properties
+     */
+    private Map<String, String> parsePropertiesStreaming() {
+        final Map<String, String> tags = new TreeMap<>();
+        String key = null;
+        while (parser.hasNext()) {
+            final Event event = parser.next();
+            switch (event) {
+            case END_OBJECT:
+                return tags;
+            case KEY_NAME:
+                key = parser.getString();
+                break;
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+                tags.put(key, parser.getString());
+                break;
+            case VALUE_TRUE:
+                tags.put(key, JsonValue.TRUE.toString());
+                break;
+            case VALUE_FALSE:
+                tags.put(key, JsonValue.FALSE.toString());
+                break;
+            case START_OBJECT:
+            case START_ARRAY:
+                warnUnsupportedProperty(key, event == Event.START_OBJECT ? "JsonObject" : "JsonArray");
+                skipValue(event);
+                break;
+            default:
+                // WARNING: DO NOT ADD NULL TO THE TAG MAP!
+            }
+        }
+        return tags;
+    }
+
+    private void skipValue(final Event event) {
+        if (event == Event.START_OBJECT) {
+            parser.skipObject();
+        } else if (event == Event.START_ARRAY) {
+            parser.skipArray();
+        }
+    }
+
     private void parseRoot(final JsonObject object) {
         switch (object.getString(TYPE)) {
         case "FeatureCollection":
@@ -94,14 +281,17 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
             parseFeature(object);
             break;
         case "GeometryCollection":
-            parseGeometryCollection(null, object);
+            parseGeometryCollection(new TreeMap<>(), object);
             break;
         default:
-            parseGeometry(null, object);
+            parseGeometry(new TreeMap<>(), object);
         }
     }
 
     private void parseFeatureCollection(final JsonArray features) {
+        if (features == null) {
+            return;
+        }
         for (JsonValue feature : features) {
             if (feature instanceof JsonObject) {
                 JsonObject item = (JsonObject) feature;
@@ -111,21 +301,22 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
     }
 
     private void parseFeature(final JsonObject feature) {
-        JsonObject geometry = feature.getJsonObject(GEOMETRY);
-        parseGeometry(feature, geometry);
+        if (!feature.isNull(GEOMETRY)) {
+            parseGeometry(getTags(feature), feature.getJsonObject(GEOMETRY));
+        }
     }
 
-    private void parseGeometryCollection(final JsonObject feature, final JsonObject geometry) {
+    private void parseGeometryCollection(final Map<String, String> tags, final JsonObject geometry) {
         JsonArray geometries = geometry.getJsonArray("geometries");
         for (JsonValue jsonValue : geometries) {
-            parseGeometry(feature, jsonValue.asJsonObject());
+            parseGeometry(tags, jsonValue.asJsonObject());
         }
     }
 
-    private void parseGeometry(final JsonObject feature, final JsonObject geometry) {
+    private void parseGeometry(final Map<String, String> tags, final JsonObject geometry) {
         switch (geometry.getString(TYPE)) {
         case "Point":
-            parsePoint(feature, geometry.getJsonArray(COORDINATES));
+            parsePoint(tags, geometry.getJsonArray(COORDINATES));
             break;
         case "MultiPoint":
         case "LineString":
@@ -134,17 +325,17 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
         case "MultiPolygon":
             throw new UnsupportedOperationException(geometry.getString(TYPE) + " not supported");
         case "GeometryCollection":
-            parseGeometryCollection(feature, geometry);
+            parseGeometryCollection(tags, geometry);
             break;
         default:
             parseUnknown(geometry);
         }
     }
 
-    private void parsePoint(final JsonObject feature, final JsonArray coordinates) {
+    private void parsePoint(final Map<String, String> tags, final JsonArray coordinates) {
         double lat = coordinates.getJsonNumber(1).doubleValue();
         double lon = coordinates.getJsonNumber(0).doubleValue();
-        createNode(getTags(feature), lat, lon);
+        createNode(tags, lat, lon);
     }
 
     private void createNode(final Map<String, String> tags, final double lat, final double lon) {
@@ -170,9 +361,7 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
                 if (value instanceof JsonString) {
                     tags.put(stringJsonValueEntry.getKey(), ((JsonString) value).getString());
                 } else if (value instanceof JsonStructure) {
-                    Logging.warn("The GeoJSON contains an object with property '" + stringJsonValueEntry.getKey()
-                            + "' whose value has the unsupported type '" + value.getClass().getSimpleName()
-                            + "'. That key-value pair is ignored!");
+                    warnUnsupportedProperty(stringJsonValueEntry.getKey(), value.getClass().getSimpleName());
                 } else if (value.getValueType() != JsonValue.ValueType.NULL) {
                     // WARNING: DO NOT ADD NULL TO THE TAG MAP!
                     tags.put(stringJsonValueEntry.getKey(), value.toString());
@@ -182,6 +371,11 @@ public class GeoJsonReader<I, N extends OpenQANode<I>, D extends OpenQADataSet<I
         return tags;
     }
 
+    private static void warnUnsupportedProperty(final String key, final String type) {
+        Logging.warn("The GeoJSON contains an object with property '" + key + "' whose value has the unsupported type '"
+                + type + "'. That key-value pair is ignored!");
+    }
+
     protected D doParseDataSet(InputStream source) {
         this.ds = this.dataSetSupplier.get();
         setParser(Json.createParser(source));
@@ -0,0 +1,48 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * An identifier index backed by a {@link HashMap}, for any identifier type
+ *
+ * @param <I> The id for the nodes
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+public final class HashIdentifierIndex<I, N extends OpenQANode<I>> implements IdentifierIndex<I, N> {
+    private final Map<I, N> nodes = new HashMap<>();
+
+    @Override
+    public N get(Object identifier) {
+        return this.nodes.get(identifier);
+    }
+
+    @Override
+    public N put(N node) {
+        return this.nodes.put(node.getIdentifier(), node);
+    }
+
+    @Override
+    public N remove(Object identifier) {
+        return this.nodes.remove(identifier);
+    }
+
+    @Override
+    public boolean containsKey(Object identifier) {
+        return this.nodes.containsKey(identifier);
+    }
+
+    @Override
+    public int size() {
+        return this.nodes.size();
+    }
+
+    @Override
+    public void clear() {
+        this.nodes.clear();
+    }
+}
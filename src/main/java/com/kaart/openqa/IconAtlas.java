@@ -0,0 +1,137 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import javax.swing.ImageIcon;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
+
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * Pre-rendered icons for an {@link ErrorLayer}. The icons are scaled for the
+ * display once, and kept for as long as the layer exists, so painting does not
+ * need to go through the icon caches of the profiles. This should only be used
+ * on the EDT.
+ *
+ * @author Taylor Smock
+ */
+final class IconAtlas {
+    /**
+     * A pre-rendered icon
+     */
+    static final class Sprite {
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+        private final boolean scaled;
+
+        Sprite(BufferedImage image, int width, int height) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+            this.scaled = image.getWidth() != width || image.getHeight() != height;
+        }
+
+        /**
+         * Draw the sprite centered on a point
+         *
+         * @param g The graphics to draw on
+         * @param x The x of the center
+         * @param y The y of the center
+         */
+        void draw(Graphics2D g, int x, int y) {
+            if (this.scaled) {
+                g.drawImage(this.image, x - this.width / 2, y - this.height / 2, this.width, this.height, null);
+            } else {
+                g.drawImage(this.image, x - this.width / 2, y - this.height / 2, null);
+            }
+        }
+    }
+
+    /**
+     * The icons for a single icon size and display scale
+     */
+    static final class Page {
+        private final ImageSizes size;
+        private final double scale;
+        private final Map<GenericInformation<?, ?, ?>, Map<String, Sprite>> sprites = new HashMap<>();
+
+        Page(ImageSizes size, double scale) {
+            this.size = size;
+            this.scale = scale;
+        }
+
+        /**
+         * Get the icon for an error
+         *
+         * @param g      The graphics the icon will be drawn on
+         * @param source The source of the error
+         * @param error  The error value
+         * @return The icon, or {@code null} if it is still being loaded
+         */
+        Sprite get(Graphics2D g, GenericInformation<?, ?, ?> source, String error) {
+            final Map<String, Sprite> sourceSprites = this.sprites.computeIfAbsent(source, key -> new HashMap<>());
+            Sprite sprite = sourceSprites.get(error);
+            if (sprite == null) {
+                final ImageIcon icon = source.getIconIfLoaded(error, this.size);
+                if (icon == null) {
+                    return null;
+                }
+                sprite = render(g.getDeviceConfiguration(), icon);
+                sourceSprites.put(error, sprite);
+            }
+            return sprite;
+        }
+
+        private Sprite render(GraphicsConfiguration configuration, ImageIcon icon) {
+            final int width = Math.max(1, icon.getIconWidth());
+            final int height = Math.max(1, icon.getIconHeight());
+            final int imageWidth = Math.max(1, (int) Math.round(width * this.scale));
+            final int imageHeight = Math.max(1, (int) Math.round(height * this.scale));
+            final BufferedImage image = configuration != null
+                    ? configuration.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            final Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(icon.getImage(), 0, 0, imageWidth, imageHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            return new Sprite(image, width, height);
+        }
+    }
+
+    private final Map<String, Page> pages = new HashMap<>();
+
+    /**
+     * Get the icons for a size, at the display scale of a graphics object
+     *
+     * @param g    The graphics the icons will be drawn on
+     * @param size The size of the icons
+     * @return The icons
+     */
+    Page getPage(Graphics2D g, ImageSizes size) {
+        final AffineTransform transform = g.getTransform();
+        // Only HiDPI scaling matters, the map is drawn in screen coordinates
+        final double scale = Math.max(1, Math.abs(transform.getScaleX()));
+        return this.pages.computeIfAbsent(size.name() + '@' + scale, key -> new Page(size, scale));
+    }
+
+    /**
+     * Remove all icons
+     */
+    void clear() {
+        this.pages.clear();
+    }
+}
@@ -0,0 +1,60 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * An index of nodes by their identifier, used by {@link OpenQADataSet}.
+ * Implementations do not need to be thread safe.
+ *
+ * @param <I> The id for the nodes
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+public interface IdentifierIndex<I, N extends OpenQANode<I>> {
+    /**
+     * Get a node
+     *
+     * @param identifier The identifier of the node
+     * @return The node, or {@code null} if there is no node with the identifier
+     */
+    N get(Object identifier);
+
+    /**
+     * Add a node, replacing any node with the same identifier
+     *
+     * @param node The node to add
+     * @return The node that was replaced, or {@code null}
+     */
+    N put(N node);
+
+    /**
+     * Remove a node
+     *
+     * @param identifier The identifier of the node to remove
+     * @return The node that was removed, or {@code null}
+     */
+    N remove(Object identifier);
+
+    /**
+     * Check if there is a node for an identifier
+     *
+     * @param identifier The identifier to look for
+     * @return {@code true} if there is a node for the identifier
+     */
+    default boolean containsKey(Object identifier) {
+        return get(identifier) != null;
+    }
+
+    /**
+     * Get the number of nodes in the index
+     *
+     * @return The number of nodes
+     */
+    int size();
+
+    /**
+     * Remove all nodes
+     */
+    void clear();
+}
@@ -0,0 +1,50 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * An identifier index for {@code long} identifiers, with the keys stored in a
+ * {@code long[]}
+ *
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+public final class LongIdentifierIndex<N extends OpenQANode<Long>> extends OpenAddressingIdentifierIndex<Long, N> {
+    private long[] keys;
+
+    @Override
+    void allocateKeys(int capacity) {
+        this.keys = new long[capacity];
+    }
+
+    @Override
+    boolean isKey(Object identifier) {
+        return identifier instanceof Long;
+    }
+
+    @Override
+    long hash(Object identifier) {
+        return (Long) identifier;
+    }
+
+    @Override
+    long hashSlot(int slot) {
+        return this.keys[slot];
+    }
+
+    @Override
+    boolean keyEquals(int slot, Object identifier) {
+        return this.keys[slot] == (Long) identifier;
+    }
+
+    @Override
+    void setKey(int slot, Long identifier) {
+        this.keys[slot] = identifier;
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        this.keys[to] = this.keys[from];
+    }
+}
@@ -0,0 +1,199 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.util.Arrays;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * An identifier index using open addressing with linear probing. The keys are
+ * stored by the subclasses in primitive arrays, so there are no entry objects
+ * or boxed keys in the index.
+ *
+ * @param <I> The id for the nodes
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+abstract class OpenAddressingIdentifierIndex<I, N extends OpenQANode<I>> implements IdentifierIndex<I, N> {
+    private static final int MIN_CAPACITY = 16;
+    /** A slot is empty when its value is {@code null} */
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    OpenAddressingIdentifierIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Allocate the arrays for the keys
+     *
+     * @param capacity The number of slots (a power of two)
+     */
+    abstract void allocateKeys(int capacity);
+
+    /**
+     * Check if an identifier has the type of the keys of this index
+     *
+     * @param identifier The identifier to check
+     * @return {@code true} if the identifier can be in this index
+     */
+    abstract boolean isKey(Object identifier);
+
+    /**
+     * Get the hash of an identifier
+     *
+     * @param identifier The identifier, see {@link #isKey(Object)}
+     * @return The hash
+     */
+    abstract long hash(Object identifier);
+
+    /**
+     * Get the hash of the key in a slot
+     *
+     * @param slot The slot
+     * @return The hash
+     */
+    abstract long hashSlot(int slot);
+
+    /**
+     * Check if the key in a slot is an identifier
+     *
+     * @param slot       The slot
+     * @param identifier The identifier, see {@link #isKey(Object)}
+     * @return {@code true} if the key in the slot is the identifier
+     */
+    abstract boolean keyEquals(int slot, Object identifier);
+
+    /**
+     * Store a key in a slot
+     *
+     * @param slot       The slot
+     * @param identifier The identifier to store
+     */
+    abstract void setKey(int slot, I identifier);
+
+    /**
+     * Move the key from one slot to another
+     *
+     * @param from The slot to move the key from
+     * @param to   The slot to move the key to
+     */
+    abstract void moveKey(int from, int to);
+
+    private void allocate(int capacity) {
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        allocateKeys(capacity);
+    }
+
+    private int slot(long hash) {
+        // Spread the high bits (see the murmur3 finalizer)
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & this.mask;
+    }
+
+    private int find(Object identifier) {
+        if (!isKey(identifier)) {
+            return -1;
+        }
+        for (int slot = slot(hash(identifier));; slot = (slot + 1) & this.mask) {
+            if (this.values[slot] == null) {
+                return -1;
+            }
+            if (keyEquals(slot, identifier)) {
+                return slot;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private N valueAt(int slot) {
+        return (N) this.values[slot];
+    }
+
+    @Override
+    public N get(Object identifier) {
+        final int slot = find(identifier);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    @Override
+    public N put(N node) {
+        final I identifier = node.getIdentifier();
+        if (!isKey(identifier)) {
+            throw new IllegalArgumentException("Unsupported identifier " + identifier);
+        }
+        int slot = slot(hash(identifier));
+        while (this.values[slot] != null) {
+            if (keyEquals(slot, identifier)) {
+                final N old = valueAt(slot);
+                this.values[slot] = node;
+                return old;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        setKey(slot, identifier);
+        this.values[slot] = node;
+        this.size++;
+        // Keep the load factor at or below 3/4
+        if (this.size * 4L > this.values.length * 3L) {
+            rehash(this.values.length * 2);
+        }
+        return null;
+    }
+
+    private void rehash(int capacity) {
+        final Object[] oldValues = this.values;
+        allocate(capacity);
+        this.size = 0;
+        for (Object value : oldValues) {
+            if (value != null) {
+                @SuppressWarnings("unchecked")
+                final N node = (N) value;
+                put(node);
+            }
+        }
+    }
+
+    @Override
+    public N remove(Object identifier) {
+        int slot = find(identifier);
+        if (slot < 0) {
+            return null;
+        }
+        final N old = valueAt(slot);
+        this.values[slot] = null;
+        this.size--;
+        // Shift the following entries back, so that lookups don't stop at the new hole
+        for (int next = (slot + 1) & this.mask; this.values[next] != null; next = (next + 1) & this.mask) {
+            final int ideal = slot(hashSlot(next));
+            final boolean inPlace = slot <= next ? slot < ideal && ideal <= next : slot < ideal || ideal <= next;
+            if (!inPlace) {
+                moveKey(next, slot);
+                this.values[slot] = this.values[next];
+                this.values[next] = null;
+                slot = next;
+            }
+        }
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        if (this.values.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(this.values, null);
+        }
+        this.size = 0;
+    }
+}
@@ -16,6 +16,8 @@ import org.openstreetmap.josm.plugins.PluginInformation;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Shortcut;
 
+import com.kaart.openqa.profiles.Outbox;
+
 /**
  * The POJO entry point for the plugin
  *
@@ -56,6 +58,7 @@ public class OpenQA extends Plugin {
         }
         OpenQAAction openqaAction = new OpenQAAction();
         MainMenu.add(MainApplication.getMenu().dataMenu, openqaAction);
+        Outbox.start();
     }
 
     @Override
@@ -1,23 +1,35 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UncheckedIOException;
-import java.net.SocketException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.text.MessageFormat;
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicReference;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import org.apache.commons.jcs3.access.CacheAccess;
 import org.apache.commons.jcs3.engine.behavior.ICacheElement;
 import org.apache.commons.jcs3.engine.behavior.IElementAttributes;
 import org.openstreetmap.josm.data.cache.JCSCacheManager;
-import org.openstreetmap.josm.io.NetworkManager;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.ListenerList;
 import org.openstreetmap.josm.tools.Logging;
 
+import com.kaart.openqa.profiles.FetchScheduler;
+
 /**
  * The class for cache
  */
@@ -27,7 +39,42 @@ public final class OpenQACache {
         // Hide the constructor
     }
 
-    private static final CacheAccess<String, byte[]> CACHE = JCSCacheManager.getCache(OpenQA.NAME);
+    /** The preference key for returning expired data while it is refreshed in the background */
+    public static final String PREF_STALE_WHILE_REVALIDATE = OpenQA.PREF_PREFIX.concat("staleWhileRevalidate");
+    /** The preference key for the codec used to store cached data ({@code gzip}, {@code deflate}, or {@code none}) */
+    public static final String PREF_COMPRESSION = OpenQA.PREF_PREFIX.concat("cacheCompression");
+    /** The preference key for the compression level of cached data (0-9) */
+    public static final String PREF_COMPRESSION_LEVEL = OpenQA.PREF_PREFIX.concat("cacheCompressionLevel");
+    private static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    private static final int MAX_MEMORY_OBJECTS = 1000;
+    /** The size of the disk cache (kB), which keeps the data across restarts */
+    private static final int MAX_DISK_SIZE = 128 * 1024;
+
+    private static final CacheAccess<String, OpenQACacheEntry> CACHE = JCSCacheManager.getCache(OpenQA.NAME,
+            MAX_MEMORY_OBJECTS, MAX_DISK_SIZE,
+            new File(Config.getDirs().getCacheDirectory(true), OpenQA.NAME.toLowerCase(Locale.ROOT)).getPath());
+    /** The downloads that are currently running, so that concurrent callers can share them */
+    private static final Map<String, CompletableFuture<OpenQACacheEntry>> IN_FLIGHT = new ConcurrentHashMap<>();
+    private static final AtomicLong DOWNLOAD_COUNT = new AtomicLong();
+    private static final AtomicLong COALESCED_COUNT = new AtomicLong();
+    private static final AtomicLong NOT_MODIFIED_COUNT = new AtomicLong();
+    /** The URLs whose expired data was returned, and that are being refreshed */
+    private static final Set<String> STALE = ConcurrentHashMap.newKeySet();
+    private static final ListenerList<RefreshListener> REFRESH_LISTENERS = ListenerList.create();
+
+    /**
+     * A listener for data that was refreshed in the background
+     */
+    @FunctionalInterface
+    public interface RefreshListener {
+        /**
+         * Called when data that was returned stale has been replaced with changed
+         * data from the server. This is not called on the EDT.
+         *
+         * @param url The URL that was refreshed
+         */
+        void dataRefreshed(String url);
+    }
 
     /**
      * Get the data from a URL (cache data for 1 day)
@@ -40,44 +87,213 @@ public final class OpenQACache {
     }
 
     /**
-     * Get the data from a URL
+     * Get the data from a URL. Expired data is revalidated with the server, and
+     * is only downloaded again if it changed. If
+     * {@link #PREF_STALE_WHILE_REVALIDATE} is set, expired data is returned at
+     * once and revalidated in the background instead (see
+     * {@link #addRefreshListener(RefreshListener)}).
      *
      * @param url        The URL to get data from
-     * @param timeToKeep The time to keep the data
-     * @return The InputStream to read
+     * @param timeToKeep The time to keep the data before it must be revalidated
+     * @return The InputStream to read. The cached data is decompressed as it is
+     *         read.
      */
     public static InputStream getUrl(String url, Duration timeToKeep) throws IOException {
-        final AtomicReference<IOException> throwable = new AtomicReference<>();
-        final byte[] bytes = CACHE.get(url, () -> {
-            HttpClient client = null;
-            try {
-                client = HttpClient.create(URI.create(url).toURL());
-                HttpClient.Response response = client.connect();
-                try (InputStream is = response.getContent()) {
-                    return is.readAllBytes();
-                }
-            } catch (IOException e) {
-                throwable.set(e);
-                return null;
-            } finally {
-                if (client != null) {
-                    client.disconnect();
-                }
+        OpenQACacheEntry entry = CACHE.get(url);
+        if (entry != null && entry.isExpired(timeToKeep)
+                && Config.getPref().getBoolean(PREF_STALE_WHILE_REVALIDATE, true)) {
+            refresh(url, entry, timeToKeep);
+        } else if (entry == null || entry.isExpired(timeToKeep)) {
+            entry = fetch(url, timeToKeep);
+        }
+        ICacheElement<String, OpenQACacheEntry> cacheElement = CACHE.getCacheElement(url);
+        if (cacheElement != null) {
+            IElementAttributes attribs = cacheElement.getElementAttributes();
+            attribs.setIdleTime(timeToKeep.toMillis());
+            cacheElement.setElementAttributes(attribs);
+        }
+        return entry.openStream();
+    }
+
+    /**
+     * Fetch the data for a URL that is not in the cache, or has expired. If
+     * another thread is already downloading the URL, wait for that download
+     * instead of starting a new one.
+     *
+     * @param url        The URL to get data from
+     * @param timeToKeep The time to keep the data before it must be revalidated
+     * @return The cache entry
+     * @throws IOException if the data could not be downloaded
+     */
+    private static OpenQACacheEntry fetch(String url, Duration timeToKeep) throws IOException {
+        final CompletableFuture<OpenQACacheEntry> future = new CompletableFuture<>();
+        final CompletableFuture<OpenQACacheEntry> inFlight = IN_FLIGHT.putIfAbsent(url, future);
+        if (inFlight != null) {
+            COALESCED_COUNT.incrementAndGet();
+            return await(url, inFlight);
+        }
+        try {
+            // The download we would have waited on may have finished before we got here
+            OpenQACacheEntry entry = CACHE.get(url);
+            if (entry == null || entry.isExpired(timeToKeep)) {
+                entry = download(url, entry);
+                CACHE.put(url, entry);
             }
-        });
-        if (bytes == null) {
-            CACHE.remove(url);
-            if (throwable.get() != null) {
-                throw throwable.get();
-            } else {
-                throw new IOException("Data was not read from " + url);
+            future.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(url, future);
+        }
+    }
+
+    /**
+     * Refresh expired data in the background
+     *
+     * @param url        The URL to refresh
+     * @param stale      The expired entry
+     * @param timeToKeep The time to keep the data before it must be revalidated
+     */
+    private static void refresh(String url, OpenQACacheEntry stale, Duration timeToKeep) {
+        if (!STALE.add(url)) {
+            return;
+        }
+        FetchScheduler.submit(FetchScheduler.getHost(url), () -> fetch(url, timeToKeep))
+                .whenComplete((entry, throwable) -> {
+                    STALE.remove(url);
+                    if (throwable != null) {
+                        Logging.debug(throwable);
+                    } else if (!entry.hasSameData(stale)) {
+                        REFRESH_LISTENERS.fireEvent(listener -> listener.dataRefreshed(url));
+                    }
+                });
+    }
+
+    /**
+     * Check if the data for a URL was returned stale, and is still being
+     * refreshed
+     *
+     * @param url The URL to check
+     * @return {@code true} if the data is stale
+     */
+    public static boolean isStale(String url) {
+        return STALE.contains(url);
+    }
+
+    /**
+     * Add a listener for data that was refreshed in the background
+     *
+     * @param listener The listener to add
+     */
+    public static void addRefreshListener(RefreshListener listener) {
+        REFRESH_LISTENERS.addListener(listener);
+    }
+
+    /**
+     * Remove a listener for refreshed data
+     *
+     * @param listener The listener to remove
+     */
+    public static void removeRefreshListener(RefreshListener listener) {
+        REFRESH_LISTENERS.removeListener(listener);
+    }
+
+    private static OpenQACacheEntry await(String url, CompletableFuture<OpenQACacheEntry> inFlight)
+            throws IOException {
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final InterruptedIOException exception = new InterruptedIOException("Interrupted while reading " + url);
+            exception.initCause(e);
+            throw exception;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Data was not read from " + url, e.getCause());
+        }
+    }
+
+    /**
+     * Download a URL
+     *
+     * @param url   The URL to download
+     * @param stale The expired entry for the URL, used for a conditional
+     *              request. May be {@code null}.
+     * @return The new entry for the URL
+     * @throws IOException if the data could not be downloaded
+     */
+    private static OpenQACacheEntry download(String url, OpenQACacheEntry stale) throws IOException {
+        HttpClient client = null;
+        try {
+            client = HttpClient.create(URI.create(url).toURL());
+            if (stale != null && stale.getETag() != null) {
+                client.setHeader("If-None-Match", stale.getETag());
+            }
+            if (stale != null && stale.getLastModified() != null) {
+                client.setHeader("If-Modified-Since", stale.getLastModified());
+            }
+            DOWNLOAD_COUNT.incrementAndGet();
+            HttpClient.Response response = client.connect();
+            if (stale != null && stale.hasValidators()
+                    && response.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                NOT_MODIFIED_COUNT.incrementAndGet();
+                return stale.revalidated(Instant.now());
+            }
+            if (response.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException(MessageFormat.format("Server returned {0} {1} for {2}",
+                        response.getResponseCode(), response.getResponseMessage(), url));
+            }
+            try (InputStream is = response.getContent()) {
+                return OpenQACacheEntry.create(is.readAllBytes(), getCodec(), getCompressionLevel(),
+                        response.getHeaderField("ETag"), response.getHeaderField("Last-Modified"), Instant.now());
+            }
+        } finally {
+            if (client != null) {
+                client.disconnect();
             }
         }
-        ICacheElement<String, byte[]> cacheElement = CACHE.getCacheElement(url);
-        IElementAttributes attribs = cacheElement.getElementAttributes();
-        attribs.setIdleTime(timeToKeep.toMillis());
-        cacheElement.setElementAttributes(attribs);
-        return new ByteArrayInputStream(bytes);
+    }
+
+    private static OpenQACacheEntry.Codec getCodec() {
+        return OpenQACacheEntry.Codec.fromName(Config.getPref().get(PREF_COMPRESSION, "gzip"));
+    }
+
+    private static int getCompressionLevel() {
+        final int level = Config.getPref().getInt(PREF_COMPRESSION_LEVEL, DEFAULT_COMPRESSION_LEVEL);
+        return Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    /**
+     * Get the number of downloads started by the cache
+     *
+     * @return The number of downloads
+     */
+    public static long getDownloadCount() {
+        return DOWNLOAD_COUNT.get();
+    }
+
+    /**
+     * Get the number of downloads where the server said that the expired data
+     * was not modified, so the cached data was kept
+     *
+     * @return The number of not modified responses
+     */
+    public static long getNotModifiedCount() {
+        return NOT_MODIFIED_COUNT.get();
+    }
+
+    /**
+     * Get the number of requests that waited on an identical download that was
+     * already running instead of starting their own
+     *
+     * @return The number of coalesced requests
+     */
+    public static long getCoalescedCount() {
+        return COALESCED_COUNT.get();
     }
 
     /**
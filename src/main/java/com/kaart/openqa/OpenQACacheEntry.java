@@ -0,0 +1,262 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A cached response, along with the validators needed to revalidate it with
+ * the server once it expires. The response body is stored compressed.
+ */
+final class OpenQACacheEntry implements Serializable {
+    private static final long serialVersionUID = 4187262949321526950L;
+
+    /**
+     * The codecs for storing the response body
+     */
+    enum Codec {
+        /** Store the body as is */
+        NONE {
+            @Override
+            OutputStream compress(OutputStream out, int level) {
+                return out;
+            }
+
+            @Override
+            InputStream decompress(InputStream in) {
+                return in;
+            }
+        },
+        /** Store the body with gzip */
+        GZIP {
+            @Override
+            OutputStream compress(OutputStream out, int level) throws IOException {
+                return new GZIPOutputStream(out) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            }
+
+            @Override
+            InputStream decompress(InputStream in) throws IOException {
+                return new GZIPInputStream(in);
+            }
+        },
+        /** Store the body with deflate (no gzip header or checksum) */
+        DEFLATE {
+            @Override
+            OutputStream compress(OutputStream out, int level) {
+                // The deflater is not owned by the stream, so it must be ended when the stream is closed
+                return new DeflaterOutputStream(out, new Deflater(level, true)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+            }
+
+            @Override
+            InputStream decompress(InputStream in) {
+                // The inflater is not owned by the stream, so it must be ended when the stream is closed
+                return new InflaterInputStream(in, new Inflater(true)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inf.end();
+                        }
+                    }
+                };
+            }
+        };
+
+        /**
+         * Wrap an output stream so that written data is compressed
+         *
+         * @param out   The stream to write the compressed data to
+         * @param level The compression level (0-9)
+         * @return The stream to write the uncompressed data to
+         * @throws IOException if the stream could not be created
+         */
+        abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+        /**
+         * Wrap an input stream so that read data is decompressed
+         *
+         * @param in The stream with the compressed data
+         * @return The stream with the uncompressed data
+         * @throws IOException if the stream could not be created
+         */
+        abstract InputStream decompress(InputStream in) throws IOException;
+
+        /**
+         * Get a codec from its name
+         *
+         * @param name The name of the codec
+         * @return The codec, or {@link #GZIP} if the name is unknown
+         */
+        static Codec fromName(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return GZIP;
+            }
+        }
+    }
+
+    private final byte[] data;
+    private final Codec codec;
+    private final int size;
+    private final String eTag;
+    private final String lastModified;
+    private final long fetched;
+
+    private OpenQACacheEntry(byte[] data, Codec codec, int size, String eTag, String lastModified, Instant fetched) {
+        this.data = data;
+        this.codec = codec;
+        this.size = size;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.fetched = fetched.toEpochMilli();
+    }
+
+    /**
+     * Create a new cache entry
+     *
+     * @param data         The response body
+     * @param codec        The codec to store the body with
+     * @param level        The compression level (0-9)
+     * @param eTag         The {@code ETag} header of the response, may be
+     *                     {@code null}
+     * @param lastModified The {@code Last-Modified} header of the response, may
+     *                     be {@code null}
+     * @param fetched      When the response was fetched
+     * @return The new entry
+     */
+    static OpenQACacheEntry create(byte[] data, Codec codec, int level, String eTag, String lastModified,
+            Instant fetched) {
+        if (codec == Codec.NONE) {
+            return new OpenQACacheEntry(data, codec, data.length, eTag, lastModified, fetched);
+        }
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 16);
+        try (OutputStream out = codec.compress(compressed, level)) {
+            out.write(data);
+        } catch (IOException e) {
+            // This is all in memory
+            throw new UncheckedIOException(e);
+        }
+        return new OpenQACacheEntry(compressed.toByteArray(), codec, data.length, eTag, lastModified, fetched);
+    }
+
+    /**
+     * Get the response body
+     *
+     * @return A stream that decompresses the body while it is read
+     * @throws IOException if the stream could not be created
+     */
+    InputStream openStream() throws IOException {
+        return this.codec.decompress(new ByteArrayInputStream(this.data));
+    }
+
+    /**
+     * Get the size of the stored (compressed) body
+     *
+     * @return The number of stored bytes
+     */
+    int getStoredSize() {
+        return this.data.length;
+    }
+
+    /**
+     * Get the size of the body
+     *
+     * @return The number of bytes in the uncompressed body
+     */
+    int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Check if another entry holds the same body as this entry, e.g. after a
+     * revalidation. Entries read back from the disk cache do not share their
+     * body with the entry they were revalidated from, so the bodies are compared.
+     *
+     * @param other The other entry
+     * @return {@code true} if the entries have the same body
+     */
+    boolean hasSameData(OpenQACacheEntry other) {
+        if (other == null) {
+            return false;
+        }
+        return this.data == other.data || (this.codec == other.codec && this.size == other.size
+                && Arrays.equals(this.data, other.data));
+    }
+
+    /**
+     * Get the {@code ETag} of the response
+     *
+     * @return The etag, or {@code null}
+     */
+    String getETag() {
+        return this.eTag;
+    }
+
+    /**
+     * Get the {@code Last-Modified} header of the response
+     *
+     * @return The last modified header, or {@code null}
+     */
+    String getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Check if the entry can be revalidated with a conditional request
+     *
+     * @return {@code true} if the entry has an etag or a last modified header
+     */
+    boolean hasValidators() {
+        return this.eTag != null || this.lastModified != null;
+    }
+
+    /**
+     * Check if the entry is older than the time to keep it
+     *
+     * @param timeToKeep The time to keep the entry
+     * @return {@code true} if the entry must be revalidated before use
+     */
+    boolean isExpired(Duration timeToKeep) {
+        return Instant.ofEpochMilli(this.fetched).plus(timeToKeep).isBefore(Instant.now());
+    }
+
+    /**
+     * Get a copy of this entry for when the server said it was not modified
+     *
+     * @param now The time of the revalidation
+     * @return The revalidated entry
+     */
+    OpenQACacheEntry revalidated(Instant now) {
+        return new OpenQACacheEntry(this.data, this.codec, this.size, this.eTag, this.lastModified, now);
+    }
+}
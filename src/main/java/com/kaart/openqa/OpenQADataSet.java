@@ -1,10 +1,9 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.openstreetmap.josm.data.osm.BBox;
@@ -20,26 +19,122 @@ import com.kaart.openqa.profiles.OpenQANode;
  * @param <N> The node type
  */
 public class OpenQADataSet<I, N extends OpenQANode<I>> {
+    /**
+     * A listener for nodes that are added to or removed from a dataset. The
+     * listener is called while the dataset is locked, on the thread that changed
+     * the dataset.
+     *
+     * @param <N> The node type
+     */
+    public interface NodeListener<N> {
+        /**
+         * Called when a node was added
+         *
+         * @param node The node that was added
+         */
+        void nodeAdded(N node);
+
+        /**
+         * Called when a node was removed
+         *
+         * @param node The node that was removed
+         */
+        void nodeRemoved(N node);
+
+        /**
+         * Called when the information of a node changed, e.g. its tags
+         *
+         * @param node The node that changed
+         */
+        void nodeChanged(N node);
+
+        /**
+         * Called when all nodes were removed
+         */
+        void cleared();
+    }
+
     private final QuadBuckets<N> store = new QuadBuckets<>();
-    private final Map<I, N> allPrimitives = new HashMap<>();
+    private final IdentifierIndex<I, N> allPrimitives;
     private final ListenerList<ErrorLayer> highlightListeners = ListenerList.create();
+    private final ListenerList<NodeListener<N>> nodeListeners = ListenerList.create();
+    /** {@code true} if the source had more errors than it returned */
+    private volatile boolean incomplete;
+    /** The areas where this dataset has all the errors, see {@link #addReplacedArea(BBox)} */
+    private final List<BBox> replacedAreas = new ArrayList<>();
+
+    /**
+     * Create a new dataset, indexing the nodes with a {@link HashIdentifierIndex}
+     */
+    public OpenQADataSet() {
+        this(new HashIdentifierIndex<>());
+    }
+
+    /**
+     * Create a new dataset
+     *
+     * @param identifierIndex The index to look up nodes by their identifier
+     */
+    protected OpenQADataSet(IdentifierIndex<I, N> identifierIndex) {
+        this.allPrimitives = identifierIndex;
+    }
 
     /**
      * Get all primitives
      *
-     * @return the primitives
+     * @return A copy of the primitives, since the dataset may be changed by other threads
+     */
+    public synchronized Collection<N> allPrimitives() {
+        return new ArrayList<>(this.store);
+    }
+
+    /**
+     * Get the number of primitives
+     *
+     * @return The number of primitives
+     */
+    public synchronized int size() {
+        return this.store.size();
+    }
+
+    /**
+     * Check if the source had more errors than are in this dataset, e.g. because
+     * of a limit on the number of errors in a response
+     *
+     * @return {@code true} if errors are missing
+     */
+    public boolean isIncomplete() {
+        return this.incomplete;
+    }
+
+    /**
+     * Set if the source had more errors than are in this dataset
+     *
+     * @param incomplete {@code true} if errors are missing
+     */
+    public void setIncomplete(boolean incomplete) {
+        this.incomplete = incomplete;
+    }
+
+    /**
+     * Mark an area as having all the errors of the source, e.g. after the errors
+     * in the area were refreshed. When this dataset is merged into another dataset,
+     * the nodes of the other dataset in the area that are not in this dataset are
+     * removed.
+     *
+     * @param area The area
      */
-    public Collection<N> allPrimitives() {
-        return store;
+    public synchronized void addReplacedArea(BBox area) {
+        this.replacedAreas.add(area);
     }
 
     /**
      * Get all nodes
      *
-     * @return The nodes
+     * @return A copy of the nodes, see {@link #allPrimitives()}
      */
     public Collection<N> getNodes() {
-        return store;
+        return allPrimitives();
     }
 
     /**
@@ -51,11 +146,40 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
         if (mergeFrom == null) {
             return;
         }
+        synchronized (mergeFrom) {
+            for (BBox area : mergeFrom.replacedAreas) {
+                // The errors that are gone from the source were fixed or closed
+                for (N node : this.store.search(area)) {
+                    if (!mergeFrom.allPrimitives.containsKey(node.getIdentifier())) {
+                        this.removePrimitive(node);
+                    }
+                }
+            }
+        }
         for (final N node : mergeFrom.allPrimitives()) {
             if (!this.containsNode(node)) {
                 this.addPrimitive(node);
             } else {
-                this.allPrimitives.get(node.getIdentifier()).setKeys(node.getKeys());
+                final N existing = this.allPrimitives.get(node.getIdentifier());
+                // The keys may change what listeners know about the node
+                this.nodeListeners.fireEvent(listener -> listener.nodeRemoved(existing));
+                existing.mergeFrom(node);
+                this.nodeListeners.fireEvent(listener -> listener.nodeAdded(existing));
+            }
+        }
+    }
+
+    /**
+     * Tell the node listeners that nodes changed. Nodes that are not in this
+     * dataset are ignored.
+     *
+     * @param nodes The nodes that changed
+     */
+    public synchronized void nodesChanged(Collection<? extends OpenQANode<?>> nodes) {
+        for (OpenQANode<?> node : nodes) {
+            final N existing = this.allPrimitives.get(node.getIdentifier());
+            if (existing == node) {
+                this.nodeListeners.fireEvent(listener -> listener.nodeChanged(existing));
             }
         }
     }
@@ -78,6 +202,27 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
         highlightListeners.addListener(errorLayer);
     }
 
+    /**
+     * Add a node listener. The listener is called with
+     * {@link NodeListener#nodeAdded} for each node that is already in the
+     * dataset.
+     *
+     * @param listener The listener to add
+     */
+    public synchronized void addNodeListener(NodeListener<N> listener) {
+        this.nodeListeners.addListener(listener);
+        this.store.forEach(listener::nodeAdded);
+    }
+
+    /**
+     * Remove a node listener
+     *
+     * @param listener The listener to remove
+     */
+    public synchronized void removeNodeListener(NodeListener<N> listener) {
+        this.nodeListeners.removeListener(listener);
+    }
+
     /**
      * Check if any of the nodes is modified
      *
@@ -92,7 +237,7 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
      *
      * @return the selected nodes
      */
-    public Collection<N> getSelectedNodes() {
+    public synchronized Collection<N> getSelectedNodes() {
         return this.store.stream().filter(OpenQANode::isSelected).collect(Collectors.toList());
     }
 
@@ -109,7 +254,7 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
      * @param displayedNode The node to look for
      * @return {@code true} if the dataset contains the node
      */
-    public boolean containsNode(OpenQANode<?> displayedNode) {
+    public synchronized boolean containsNode(OpenQANode<?> displayedNode) {
         return this.allPrimitives.containsKey(displayedNode.getIdentifier());
     }
 
@@ -129,7 +274,11 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
      */
     public synchronized void addPrimitive(N node) {
         this.store.add(node);
-        this.allPrimitives.put(node.getIdentifier(), node);
+        final N replaced = this.allPrimitives.put(node);
+        if (replaced != null) {
+            this.nodeListeners.fireEvent(listener -> listener.nodeRemoved(replaced));
+        }
+        this.nodeListeners.fireEvent(listener -> listener.nodeAdded(node));
     }
 
     /**
@@ -139,7 +288,10 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
      */
     public synchronized void removePrimitive(OpenQANode<?> node) {
         this.store.remove(node);
-        this.allPrimitives.remove(node.getIdentifier());
+        final N removed = this.allPrimitives.remove(node.getIdentifier());
+        if (removed != null) {
+            this.nodeListeners.fireEvent(listener -> listener.nodeRemoved(removed));
+        }
     }
 
     /**
@@ -148,6 +300,7 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
     public synchronized void clear() {
         this.store.clear();
         this.allPrimitives.clear();
+        this.nodeListeners.fireEvent(NodeListener::cleared);
     }
 
     /**
@@ -156,7 +309,7 @@ public class OpenQADataSet<I, N extends OpenQANode<I>> {
      * @param location The area to search
      * @return The nodes that were found
      */
-    public Collection<N> searchNodes(BBox location) {
+    public synchronized Collection<N> searchNodes(BBox location) {
         return this.store.search(location);
     }
 }
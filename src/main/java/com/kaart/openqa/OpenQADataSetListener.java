@@ -3,6 +3,7 @@ package com.kaart.openqa;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
@@ -22,9 +23,40 @@ import org.openstreetmap.josm.gui.MainApplication;
  * @author Taylor Smock
  */
 public class OpenQADataSetListener implements DataSetListener {
+    /** Incremented whenever the OSM data that issues refer to may have changed */
+    private static final AtomicLong OSM_DATA_VERSION = new AtomicLong();
 
     private List<Bounds> bounds;
 
+    /**
+     * Get the version of the OSM data. The version changes whenever primitives are
+     * added, removed or changed in any data layer, or a data layer is added or
+     * removed, so that information derived from the OSM data can be cached.
+     *
+     * @return The version of the OSM data
+     */
+    public static long getOsmDataVersion() {
+        return OSM_DATA_VERSION.get();
+    }
+
+    /**
+     * Note that the OSM data may have changed
+     */
+    static void osmDataChanged() {
+        OSM_DATA_VERSION.incrementAndGet();
+    }
+
+    /**
+     * Note that primitives were added, removed or changed (which also makes them
+     * modified)
+     *
+     * @param e The event for the change
+     */
+    private static void primitivesChanged(AbstractDatasetChangedEvent e) {
+        OsmPrimitiveIndex.primitivesChanged(e.getPrimitives());
+        osmDataChanged();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -33,6 +65,8 @@ public class OpenQADataSetListener implements DataSetListener {
      */
     @Override
     public void dataChanged(DataChangedEvent e) {
+        OsmPrimitiveIndex.clear();
+        osmDataChanged();
         List<Bounds> tBounds = e.getDataset().getDataSourceBounds();
         List<ErrorLayer> layers = MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class);
         if (!layers.isEmpty() && (bounds == null || !new HashSet<>(bounds).containsAll(tBounds))) {
@@ -43,42 +77,38 @@ public class OpenQADataSetListener implements DataSetListener {
 
     @Override
     public void otherDatasetChange(AbstractDatasetChangedEvent e) {
-        // Don't care
+        OsmPrimitiveIndex.clear();
+        osmDataChanged();
     }
 
     @Override
     public void nodeMoved(NodeMovedEvent e) {
-        // Don't care
+        primitivesChanged(e);
     }
 
     @Override
     public void primitivesAdded(PrimitivesAddedEvent e) {
-        // Don't care
-
+        primitivesChanged(e);
     }
 
     @Override
     public void primitivesRemoved(PrimitivesRemovedEvent e) {
-        // Don't care
-
+        primitivesChanged(e);
     }
 
     @Override
     public void relationMembersChanged(RelationMembersChangedEvent e) {
-        // Don't care
-
+        primitivesChanged(e);
     }
 
     @Override
     public void tagsChanged(TagsChangedEvent e) {
-        // Don't care
-
+        primitivesChanged(e);
     }
 
     @Override
     public void wayNodesChanged(WayNodesChangedEvent e) {
-        // Don't care
-
+        primitivesChanged(e);
     }
 
 }
@@ -52,6 +52,8 @@ public class OpenQALayerChangeListener implements LayerChangeListener {
             OpenQADataSetListener listener = new OpenQADataSetListener();
             layer.data.addDataSetListener(listener);
             listeners.put(layer, listener);
+            OsmPrimitiveIndex.clear();
+            OpenQADataSetListener.osmDataChanged();
             List<ErrorLayer> errorLayers = MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class);
             if (!errorLayers.isEmpty()) {
                 updateOpenQALayers();
@@ -68,6 +70,8 @@ public class OpenQALayerChangeListener implements LayerChangeListener {
             OsmDataLayer layer = (OsmDataLayer) e.getRemovedLayer();
             layer.data.removeDataSetListener(listeners.get(layer));
             listeners.remove(layer);
+            OsmPrimitiveIndex.clear();
+            OpenQADataSetListener.osmDataChanged();
         }
     }
 
@@ -0,0 +1,133 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+
+/**
+ * The OSM primitives that issues refer to, across all data layers. Each id is
+ * looked up in the layers once, and the result is kept until the
+ * {@link OpenQADataSetListener} sees a change to a primitive with that id, or
+ * the data layers change.
+ *
+ * @author Taylor Smock
+ */
+public final class OsmPrimitiveIndex {
+    /** The maximum number of ids to keep, so that the index cannot grow without limit */
+    private static final int MAX_SIZE = 1 << 16;
+
+    /**
+     * The primitives for an id
+     */
+    private static final class Lookup {
+        /** The primitive from the first data layer that has it */
+        private final OsmPrimitive primitive;
+        /** The newest unmodified primitive in a layer that can be uploaded and downloaded */
+        private final OsmPrimitive latestServerPrimitive;
+
+        Lookup(OsmPrimitive primitive, OsmPrimitive latestServerPrimitive) {
+            this.primitive = primitive;
+            this.latestServerPrimitive = latestServerPrimitive;
+        }
+    }
+
+    private static final Map<PrimitiveId, Lookup> INDEX = new ConcurrentHashMap<>();
+    /** Incremented on every change, so that lookups that raced with a change are not kept */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private OsmPrimitiveIndex() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get a primitive from the data layers
+     *
+     * @param id The id of the primitive
+     * @return The primitive from the first data layer that has it, or
+     *         {@code null}
+     */
+    public static OsmPrimitive getPrimitive(PrimitiveId id) {
+        return getLookup(id).primitive;
+    }
+
+    /**
+     * Get the latest <i>downloaded, non-modified</i> server primitive
+     *
+     * @param id The id of the primitive
+     * @return The primitive with the highest version, or {@code null}
+     */
+    public static OsmPrimitive getLatestServerPrimitive(PrimitiveId id) {
+        return getLookup(id).latestServerPrimitive;
+    }
+
+    private static Lookup getLookup(PrimitiveId id) {
+        // Primitives are not equal to ids with the same value, so always use simple ids as keys
+        final PrimitiveId key = new SimplePrimitiveId(id.getUniqueId(), id.getType());
+        final Lookup cached = INDEX.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final long generation = GENERATION.get();
+        final Lookup lookup = lookup(key);
+        if (INDEX.size() >= MAX_SIZE) {
+            INDEX.clear();
+        }
+        INDEX.put(key, lookup);
+        if (generation != GENERATION.get()) {
+            // The data changed while looking the id up
+            INDEX.remove(key, lookup);
+        }
+        return lookup;
+    }
+
+    private static Lookup lookup(PrimitiveId id) {
+        OsmPrimitive primitive = null;
+        OsmPrimitive latestServerPrimitive = null;
+        for (OsmDataLayer layer : MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class)) {
+            final OsmPrimitive found = layer.getDataSet().getPrimitiveById(id);
+            if (found == null) {
+                continue;
+            }
+            if (primitive == null) {
+                primitive = found;
+            }
+            if (layer.isDownloadable() && layer.isUploadable() && !found.isModified()
+                    && (latestServerPrimitive == null || found.getVersion() > latestServerPrimitive.getVersion())) {
+                latestServerPrimitive = found;
+            }
+        }
+        return new Lookup(primitive, latestServerPrimitive);
+    }
+
+    /**
+     * Forget the lookups for changed primitives
+     *
+     * @param primitives The primitives that were added, removed or changed
+     */
+    static void primitivesChanged(Collection<? extends OsmPrimitive> primitives) {
+        GENERATION.incrementAndGet();
+        if (primitives == null) {
+            INDEX.clear();
+            return;
+        }
+        for (OsmPrimitive primitive : primitives) {
+            INDEX.remove(new SimplePrimitiveId(primitive.getUniqueId(), primitive.getType()));
+        }
+    }
+
+    /**
+     * Forget all lookups, for changes that cannot be tracked per primitive
+     */
+    static void clear() {
+        GENERATION.incrementAndGet();
+        INDEX.clear();
+    }
+}
@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import javax.swing.Timer;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Fetch the additional information of the issues in view while the map view is
+ * idle, so that it is usually there when an issue is clicked. The issues
+ * nearest to the mouse are fetched first. Whenever the map view moves, the
+ * fetches that have not started yet are dropped, and the issues are collected
+ * again once the map view is idle. This should only be used on the EDT.
+ *
+ * @author Taylor Smock
+ */
+final class Prefetcher implements NavigatableComponent.ZoomChangeListener {
+    /** The preference key for the maximum number of issues to fetch each time the map view is idle */
+    static final String PREF_PREFETCH_BUDGET = OpenQA.PREF_PREFIX.concat("prefetchBudget");
+    /** The preference key for the maximum number of fetches at the same time */
+    static final String PREF_PREFETCH_CONCURRENCY = OpenQA.PREF_PREFIX.concat("prefetchConcurrency");
+    private static final int DEFAULT_PREFETCH_BUDGET = 50;
+    private static final int DEFAULT_PREFETCH_CONCURRENCY = 2;
+    /** The time (ms) the map view must be still before fetching */
+    private static final int IDLE_DELAY = 750;
+
+    /**
+     * An issue that may be fetched
+     */
+    static final class Candidate {
+        private final double distance;
+        private final Supplier<CompletableFuture<?>> fetch;
+
+        /**
+         * Create a new candidate
+         *
+         * @param distance The distance of the issue from the mouse
+         * @param fetch    Start fetching the issue
+         */
+        Candidate(double distance, Supplier<CompletableFuture<?>> fetch) {
+            this.distance = distance;
+            this.fetch = fetch;
+        }
+
+        double getDistance() {
+            return this.distance;
+        }
+    }
+
+    private final Supplier<List<Candidate>> candidates;
+    private final Timer idleTimer;
+    private final Deque<Candidate> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Create a new prefetcher
+     *
+     * @param candidates Get the issues in view that still need information
+     */
+    Prefetcher(Supplier<List<Candidate>> candidates) {
+        this.candidates = candidates;
+        this.idleTimer = new Timer(IDLE_DELAY, e -> start());
+        this.idleTimer.setRepeats(false);
+    }
+
+    /**
+     * Start listening to the map view
+     */
+    void enable() {
+        NavigatableComponent.addZoomChangeListener(this);
+        restart();
+    }
+
+    /**
+     * Stop listening to the map view, and drop the fetches that have not started
+     */
+    void disable() {
+        NavigatableComponent.removeZoomChangeListener(this);
+        this.idleTimer.stop();
+        this.queue.clear();
+    }
+
+    @Override
+    public void zoomChanged() {
+        restart();
+    }
+
+    /**
+     * Drop the fetches that have not started, and collect the issues again once
+     * the map view is idle
+     */
+    void restart() {
+        this.queue.clear();
+        this.idleTimer.restart();
+    }
+
+    /**
+     * Collect the issues in view, and start fetching the nearest ones
+     */
+    void start() {
+        this.queue.clear();
+        final int budget = Config.getPref().getInt(PREF_PREFETCH_BUDGET, DEFAULT_PREFETCH_BUDGET);
+        if (budget <= 0) {
+            return;
+        }
+        this.candidates.get().stream().sorted(Comparator.comparingDouble(Candidate::getDistance)).limit(budget)
+                .forEach(this.queue::add);
+        fill();
+    }
+
+    private void fill() {
+        final int concurrency = Math.max(1,
+                Config.getPref().getInt(PREF_PREFETCH_CONCURRENCY, DEFAULT_PREFETCH_CONCURRENCY));
+        while (this.inFlight < concurrency && !this.queue.isEmpty()) {
+            this.inFlight++;
+            this.queue.poll().fetch.get().whenComplete((result, throwable) -> GuiHelper.runInEDT(() -> {
+                this.inFlight--;
+                if (throwable != null) {
+                    Logging.debug(throwable);
+                }
+                fill();
+            }));
+        }
+    }
+}
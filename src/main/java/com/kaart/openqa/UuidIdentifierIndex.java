@@ -0,0 +1,58 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.util.UUID;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * An identifier index for {@link UUID} identifiers, with the keys stored as
+ * two {@code long}s per slot
+ *
+ * @param <N> The node type
+ * @author Taylor Smock
+ */
+public final class UuidIdentifierIndex<N extends OpenQANode<UUID>> extends OpenAddressingIdentifierIndex<UUID, N> {
+    /** The most significant bits at {@code 2 * slot}, the least significant bits at {@code 2 * slot + 1} */
+    private long[] keys;
+
+    @Override
+    void allocateKeys(int capacity) {
+        this.keys = new long[capacity * 2];
+    }
+
+    @Override
+    boolean isKey(Object identifier) {
+        return identifier instanceof UUID;
+    }
+
+    @Override
+    long hash(Object identifier) {
+        final UUID uuid = (UUID) identifier;
+        return uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits();
+    }
+
+    @Override
+    long hashSlot(int slot) {
+        return this.keys[2 * slot] ^ this.keys[2 * slot + 1];
+    }
+
+    @Override
+    boolean keyEquals(int slot, Object identifier) {
+        final UUID uuid = (UUID) identifier;
+        return this.keys[2 * slot] == uuid.getMostSignificantBits()
+                && this.keys[2 * slot + 1] == uuid.getLeastSignificantBits();
+    }
+
+    @Override
+    void setKey(int slot, UUID identifier) {
+        this.keys[2 * slot] = identifier.getMostSignificantBits();
+        this.keys[2 * slot + 1] = identifier.getLeastSignificantBits();
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        this.keys[2 * to] = this.keys[2 * from];
+        this.keys[2 * to + 1] = this.keys[2 * from + 1];
+    }
+}
@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * The area that errors were downloaded for, so that only new areas are
+ * downloaded when the data sources change. An area is kept for each set of
+ * enabled errors (see {@link GenericInformation#buildDownloadErrorList()}), so
+ * that switching back to a set does not download everything again.
+ *
+ * @author Taylor Smock
+ */
+public final class Coverage {
+    /** The maximum number of sets of enabled errors to keep an area for */
+    private static final int MAX_AREAS = 16;
+
+    /**
+     * The covered areas by the enabled errors they were downloaded for, in degrees
+     * (x is the longitude, y is the latitude)
+     */
+    private final Map<String, Area> areas = new LinkedHashMap<String, Area>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Area> eldest) {
+            return size() > MAX_AREAS;
+        }
+    };
+
+    /**
+     * Get the tiles that are not covered yet
+     *
+     * @param errors The enabled errors that the tiles are for
+     * @param tiles  The tiles to check
+     * @return The tiles that are not completely covered
+     */
+    public synchronized List<Bounds> getMissing(String errors, Collection<Bounds> tiles) {
+        final Area area = this.areas.get(errors);
+        final List<Bounds> missing = new ArrayList<>(tiles.size());
+        for (Bounds tile : tiles) {
+            if (area == null || area.isEmpty() || !area.contains(toRectangle(tile))) {
+                missing.add(tile);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Mark a tile as covered
+     *
+     * @param errors The enabled errors that the tile was downloaded for
+     * @param tile   The tile
+     */
+    public synchronized void add(String errors, Bounds tile) {
+        this.areas.computeIfAbsent(errors, key -> new Area()).add(new Area(toRectangle(tile)));
+    }
+
+    /**
+     * Forget that an area was downloaded, for all the enabled errors
+     *
+     * @param bounds The area
+     */
+    public synchronized void remove(Bounds bounds) {
+        final Area removed = new Area(toRectangle(bounds));
+        this.areas.values().forEach(area -> area.subtract(removed));
+    }
+
+    /**
+     * Forget the covered area, so that everything is downloaded again
+     */
+    public synchronized void clear() {
+        this.areas.clear();
+    }
+
+    private static Rectangle2D toRectangle(Bounds bounds) {
+        return new Rectangle2D.Double(bounds.getMinLon(), bounds.getMinLat(), bounds.getMaxLon() - bounds.getMinLon(),
+                bounds.getMaxLat() - bounds.getMinLat());
+    }
+}
@@ -0,0 +1,219 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.openqa.OpenQA;
+
+/**
+ * Schedule downloads for the error sources. Downloads run in parallel, but no
+ * more than {@link #getMaxConnectionsPerHost()} downloads run against a single
+ * host at the same time. Further downloads for that host wait in a queue.
+ *
+ * @author Taylor Smock
+ */
+public final class FetchScheduler {
+    /** The preference key for the maximum number of concurrent downloads per host */
+    public static final String PREF_MAX_CONNECTIONS_PER_HOST = OpenQA.PREF_PREFIX.concat("maxConnectionsPerHost");
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    /** How often the monitor is checked for cancellation while waiting on downloads */
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private static final ExecutorService EXECUTOR = Executors
+            .newCachedThreadPool(Utils.newThreadFactory("openqa-fetch-%d", Thread.NORM_PRIORITY));
+    private static final Map<String, HostQueue> HOST_QUEUES = new ConcurrentHashMap<>();
+
+    private FetchScheduler() {
+        // Hide the constructor
+    }
+
+    /**
+     * Fetch something for an item
+     *
+     * @param <T> The item type
+     * @param <R> The result type
+     */
+    @FunctionalInterface
+    public interface Fetcher<T, R> {
+        /**
+         * Fetch the data for an item
+         *
+         * @param item The item to fetch data for
+         * @return The fetched data, may be {@code null}
+         * @throws IOException if the data could not be fetched
+         */
+        R fetch(T item) throws IOException;
+    }
+
+    /**
+     * The queue of downloads for a single host
+     */
+    private static final class HostQueue {
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int active;
+
+        synchronized void submit(Runnable task) {
+            if (active < getMaxConnectionsPerHost()) {
+                active++;
+                EXECUTOR.execute(() -> run(task));
+            } else {
+                pending.add(task);
+            }
+        }
+
+        synchronized void remove(Runnable task) {
+            pending.remove(task);
+        }
+
+        private void run(Runnable task) {
+            try {
+                task.run();
+            } finally {
+                next();
+            }
+        }
+
+        private synchronized void next() {
+            final Runnable task = pending.poll();
+            if (task == null) {
+                active--;
+            } else {
+                EXECUTOR.execute(() -> run(task));
+            }
+        }
+    }
+
+    /**
+     * Get the maximum number of concurrent downloads for a single host
+     *
+     * @return The maximum number of connections
+     */
+    public static int getMaxConnectionsPerHost() {
+        return Math.max(1,
+                Config.getPref().getInt(PREF_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_PER_HOST));
+    }
+
+    /**
+     * Get the host for a URL
+     *
+     * @param url The url to get the host for
+     * @return The host, or the url if it has no host
+     */
+    public static String getHost(String url) {
+        final String host = URI.create(url).getHost();
+        return host == null ? url : host;
+    }
+
+    /**
+     * Run a task against a host. Cancelling the returned future before the task
+     * starts removes it from the queue, and the task is not run.
+     *
+     * @param host The host the task connects to
+     * @param task The task to run
+     * @param <R>  The result type
+     * @return The future result of the task
+     */
+    public static <R> CompletableFuture<R> submit(String host, Callable<R> task) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        final HostQueue queue = HOST_QUEUES.computeIfAbsent(host, h -> new HostQueue());
+        final Runnable queued = () -> {
+            // The future may have been cancelled just as the task was taken from the queue
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        };
+        queue.submit(queued);
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                queue.remove(queued);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Fetch data for all items in parallel. The results are handed to the
+     * {@code consumer} on the calling thread as they finish, and each finished
+     * item is one tick on the {@code monitor}.
+     *
+     * @param host     The host the fetcher connects to
+     * @param items    The items to fetch data for
+     * @param fetcher  The method to fetch the data for a single item
+     * @param consumer The consumer for the results
+     * @param monitor  The monitor to report progress to and check for
+     *                 cancellation
+     * @param <T>      The item type
+     * @param <R>      The result type
+     */
+    public static <T, R> void fetchAll(String host, Collection<T> items, Fetcher<T, R> fetcher, Consumer<R> consumer,
+            ProgressMonitor monitor) {
+        final BlockingQueue<CompletableFuture<R>> finished = new LinkedBlockingQueue<>();
+        final List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            final CompletableFuture<R> future = submit(host, () -> fetcher.fetch(item));
+            future.whenComplete((result, throwable) -> finished.add(future));
+            futures.add(future);
+        }
+        try {
+            int done = 0;
+            while (done < futures.size()) {
+                if (monitor.isCanceled()) {
+                    futures.forEach(future -> future.cancel(false));
+                    break;
+                }
+                final CompletableFuture<R> future = finished.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                done++;
+                monitor.worked(1);
+                consume(future, consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Logging.debug(e);
+            futures.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private static <R> void consume(CompletableFuture<R> future, Consumer<R> consumer) throws InterruptedException {
+        try {
+            final R result = future.get();
+            if (result != null) {
+                consumer.accept(result);
+            }
+        } catch (ExecutionException e) {
+            Logging.error(e.getCause());
+        } catch (CancellationException e) {
+            Logging.trace(e);
+        }
+    }
+}
@@ -1,36 +1,49 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa.profiles;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Data;
 import org.openstreetmap.josm.data.osm.DataSet;
-import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
 import org.openstreetmap.josm.data.osm.User;
 import org.openstreetmap.josm.gui.MainApplication;
-import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.io.XmlWriter;
 import org.openstreetmap.josm.spi.preferences.Config;
-import org.openstreetmap.josm.tools.HttpClient;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
+import org.openstreetmap.josm.tools.Logging;
 
 import com.kaart.openqa.ErrorLayer;
 import com.kaart.openqa.OpenQA;
+import com.kaart.openqa.OpenQACache;
 import com.kaart.openqa.OpenQADataSet;
+import com.kaart.openqa.OpenQADataSetListener;
+import com.kaart.openqa.OsmPrimitiveIndex;
 
 /**
  * A class storing information for the different error sources
@@ -47,9 +60,85 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
     /** The key to store unique the error id */
     public static final String ERROR_ID = "error_id";
 
+    /** The key to store the action taken on an error ({@code true} for fixed, {@code false} for false positive) */
+    public static final String ACTION_TAKEN = "actionTaken";
+
+    /** The maximum length of a changeset tag value */
+    private static final int MAX_TAG_LENGTH = 255;
+
     /** the difference between groups (integer numbers) */
     public static final int GROUP_DIFFERENCE = 10;
 
+    /**
+     * The actions that can be taken on an issue
+     */
+    public enum IssueAction {
+        /** The issue was fixed */
+        FIXED,
+        /** The issue is not an issue */
+        FALSE_POSITIVE;
+
+        /**
+         * Get the text to show to the user
+         *
+         * @return The translated action
+         */
+        public String getDisplayName() {
+            return this == FIXED ? tr("Fixed") : tr("False Positive");
+        }
+    }
+
+    /** The maximum number of tooltips to keep for each source */
+    private static final int MAX_CACHED_TOOLTIPS = 256;
+
+    /**
+     * A tooltip, with the state of the node and the OSM data it was created for
+     */
+    private static final class CachedToolTip {
+        private final OpenQANode<?> node;
+        private final int modificationStamp;
+        private final long osmDataVersion;
+        private final long outboxVersion;
+        private final String toolTip;
+
+        CachedToolTip(OpenQANode<?> node, int modificationStamp, long osmDataVersion, long outboxVersion,
+                String toolTip) {
+            this.node = node;
+            this.modificationStamp = modificationStamp;
+            this.osmDataVersion = osmDataVersion;
+            this.outboxVersion = outboxVersion;
+            this.toolTip = toolTip;
+        }
+    }
+
+    /** The most recently used tooltips, by node identifier */
+    private final Map<I, CachedToolTip> toolTips = Collections.synchronizedMap(new LinkedHashMap<I, CachedToolTip>(16,
+            0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<I, CachedToolTip> eldest) {
+            return size() > MAX_CACHED_TOOLTIPS;
+        }
+    });
+
+    /** The maximum number of downloaded URLs to keep the area of */
+    private static final int MAX_URL_BOUNDS = 4096;
+
+    /** The areas that errors were downloaded for */
+    private final Coverage coverage = new Coverage();
+    /** The areas of the most recently downloaded URLs, see {@link #getUrl(String, Bounds)} */
+    private final Map<String, Bounds> urlBounds = Collections.synchronizedMap(new LinkedHashMap<String, Bounds>(16,
+            0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bounds> eldest) {
+            return size() > MAX_URL_BOUNDS;
+        }
+    });
+    /** The areas that were refreshed, and whose errors must replace the errors that are shown */
+    private final Set<Bounds> refreshedBounds = ConcurrentHashMap.newKeySet();
+
+    /** The icons that are loaded, or being loaded, in the background */
+    private final Map<String, CompletableFuture<ImageIcon>> asyncIcons = new ConcurrentHashMap<>();
+
     /**
      * The layer name
      *
@@ -96,9 +185,53 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
      * @return {@code ImageIcon} to associate with a {@code String string}
      */
     public ImageIcon getIcon(String string, ImageSizes size) {
+        return getDefaultIcon(size);
+    }
+
+    private static ImageIcon getDefaultIcon(ImageSizes size) {
         return ImageProvider.get("dialogs/notes", "note_open", size);
     }
 
+    /**
+     * Get an icon without blocking. If the icon has not been loaded yet, it is
+     * loaded with {@link #getIcon(String, ImageSizes)} in the background, and the
+     * error layers are redrawn once it is ready.
+     *
+     * @param string The string with which to get information
+     * @param size   The size of the icon
+     * @return The icon, or {@code null} if it is still being loaded or could not
+     *         be loaded. An icon that could not be loaded is loaded again on a
+     *         later call.
+     */
+    public ImageIcon getIconIfLoaded(String string, ImageSizes size) {
+        final String key = size.name() + ':' + string;
+        final CompletableFuture<ImageIcon> icon = this.asyncIcons.computeIfAbsent(key, k -> loadIcon(string, size));
+        if (icon.isCompletedExceptionally()) {
+            // The failure may be temporary, so try again the next time the icon is needed
+            this.asyncIcons.remove(key, icon);
+            return null;
+        }
+        if (!icon.isDone()) {
+            return null;
+        }
+        return icon.join();
+    }
+
+    private CompletableFuture<ImageIcon> loadIcon(String string, ImageSizes size) {
+        // Use a separate queue for icons, so that they don't wait on the error downloads
+        final CompletableFuture<ImageIcon> icon = FetchScheduler
+                .submit("icons:" + FetchScheduler.getHost(getBaseApi()), () -> getIcon(string, size));
+        icon.whenComplete((loaded, throwable) -> {
+            if (throwable != null) {
+                // The placeholder is already drawn, so there is nothing to redraw
+                Logging.error(throwable);
+            } else {
+                GuiHelper.runInEDT(() -> redrawErrorLayers(getName()));
+            }
+        });
+        return icon;
+    }
+
     /**
      * Get the errors for a layer
      *
@@ -126,6 +259,101 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
      */
     public abstract D getErrors(List<Bounds> bounds, ProgressMonitor progressMonitor);
 
+    /**
+     * Get errors for each of the bounds. The bounds are split into tiles (see
+     * {@link TileGrid}), which are downloaded in parallel (see
+     * {@link FetchScheduler}) and merged as they finish. Tiles that were already
+     * downloaded for the enabled errors are skipped (see {@link #clearCoverage()}).
+     *
+     * @param bounds    {@code List<Bounds>} to get data for
+     * @param inMonitor The {@code ProgressMonitor} with which to monitor progress
+     * @param fetcher   The method to get the errors for a single tile
+     * @return A new dataset that has error information for the parts of the
+     *         {@code bounds} that were not downloaded before
+     */
+    protected D getErrors(List<Bounds> bounds, ProgressMonitor inMonitor, FetchScheduler.Fetcher<Bounds, D> fetcher) {
+        final String enabled = buildDownloadErrorList();
+        final List<Bounds> tiles = this.coverage.getMissing(enabled, TileGrid.getTiles(bounds));
+        ProgressMonitor monitor = inMonitor.createSubTaskMonitor(0, false);
+        monitor.beginTask(tr("Getting {0} errors", getName()));
+        monitor.subTask(tr("Updating {0} information", getName()));
+        monitor.setTicksCount(tiles.size());
+        monitor.setTicks(0);
+        final D returnDataSet = createNewDataSet();
+        final List<Bounds> completeTiles = Collections.synchronizedList(new ArrayList<>());
+        // Only tiles that were downloaded and merged are covered, so that failed or canceled tiles are tried again.
+        // Tiles that the source could not return all errors for are not covered, so that they are tried again too.
+        FetchScheduler.fetchAll(FetchScheduler.getHost(getBaseApi()), tiles,
+                tile -> new AbstractMap.SimpleImmutableEntry<>(tile, fetcher.fetch(tile)), tile -> {
+                    if (tile.getValue() != null) {
+                        restoreActions(tile.getValue());
+                        returnDataSet.mergeFrom(tile.getValue());
+                    }
+                    if (tile.getValue() == null || !tile.getValue().isIncomplete()) {
+                        this.coverage.add(enabled, tile.getKey());
+                    }
+                    if (tile.getValue() != null && !tile.getValue().isIncomplete()) {
+                        completeTiles.add(tile.getKey());
+                    }
+                }, monitor);
+        // The errors of refreshed areas that were downloaded again replace the errors that are shown
+        for (Bounds refreshed : this.refreshedBounds) {
+            if (completeTiles.stream().anyMatch(tile -> tile.contains(refreshed.getMin())
+                    && tile.contains(refreshed.getMax()))) {
+                returnDataSet.addReplacedArea(refreshed.toBBox());
+                this.refreshedBounds.remove(refreshed);
+            }
+        }
+        monitor.finishTask();
+        return returnDataSet;
+    }
+
+    /**
+     * Forget which areas were downloaded, so that the next download gets
+     * everything again
+     */
+    public void clearCoverage() {
+        this.coverage.clear();
+        this.refreshedBounds.clear();
+    }
+
+    /**
+     * Get the data from a URL for an area (see {@link OpenQACache#getUrl(String)}),
+     * remembering the area in case the data is refreshed later
+     *
+     * @param url   The URL to get data from
+     * @param bound The area of the data
+     * @return The InputStream to read
+     * @throws IOException if the data could not be read
+     */
+    protected InputStream getUrl(String url, Bounds bound) throws IOException {
+        this.urlBounds.put(url, bound);
+        return OpenQACache.getUrl(url);
+    }
+
+    /**
+     * Handle data that was refreshed in the background (see
+     * {@link OpenQACache#addRefreshListener}). The area of the data is downloaded
+     * again on the next update, and its errors replace the errors that are shown.
+     *
+     * @param url The URL that was refreshed
+     * @return {@code true} if the URL is for this source
+     */
+    public boolean dataRefreshed(String url) {
+        if (!url.startsWith(getBaseApi())) {
+            return false;
+        }
+        final Bounds bound = this.urlBounds.get(url);
+        if (bound == null) {
+            // The area is not known anymore, so everything must be downloaded again
+            clearCoverage();
+        } else {
+            this.coverage.remove(bound);
+            this.refreshedBounds.add(bound);
+        }
+        return true;
+    }
+
     /**
      * Get the bounds for a dataSet
      *
@@ -152,12 +380,50 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
     public abstract List<String> buildDefaultPref();
 
     /**
-     * Get the tooltip for a node
+     * Get the tooltip for a node, with the status of the latest action taken on
+     * it. Tooltips are cached until the node, the OSM data, or the
+     * {@link Outbox} changes.
      *
      * @param node {@code Node} to get information from
      * @return {@code String} with the information in HTML format
      */
-    public abstract String getNodeToolTip(N node);
+    public final String getNodeToolTip(N node) {
+        // Get the versions first, so that changes while creating the tooltip are not missed
+        final int modificationStamp = node.getModificationStamp();
+        final long osmDataVersion = OpenQADataSetListener.getOsmDataVersion();
+        final long outboxVersion = Outbox.getVersion();
+        final CachedToolTip cached = this.toolTips.get(node.getIdentifier());
+        if (cached != null && cached.node == node && cached.modificationStamp == modificationStamp
+                && cached.osmDataVersion == osmDataVersion && cached.outboxVersion == outboxVersion) {
+            return cached.toolTip;
+        }
+        final String toolTip = addActionStatus(node, createNodeToolTip(node));
+        this.toolTips.put(node.getIdentifier(),
+                new CachedToolTip(node, modificationStamp, osmDataVersion, outboxVersion, toolTip));
+        return toolTip;
+    }
+
+    private String addActionStatus(N node, String toolTip) {
+        final String issue = getOutboxIssue(node);
+        final Outbox.Status status = Outbox.getStatus(issue);
+        final int end = toolTip.lastIndexOf("</html>");
+        if (status == null || end < 0) {
+            return toolTip;
+        }
+        final String name = Outbox.getAction(issue);
+        final String action = Stream.of(IssueAction.values()).filter(value -> value.name().equals(name))
+                .map(IssueAction::getDisplayName).findFirst().orElse(name);
+        return toolTip.substring(0, end) + "<hr/>" + tr("{0}: {1}", action, status.getDisplayName())
+                + toolTip.substring(end);
+    }
+
+    /**
+     * Create the tooltip for a node
+     *
+     * @param node {@code Node} to get information from
+     * @return {@code String} with the information in HTML format
+     */
+    protected abstract String createNodeToolTip(N node);
 
     /**
      * Cache additional information for a node
@@ -169,6 +435,36 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
         return false;
     }
 
+    /**
+     * Check if a node still needs its additional information
+     *
+     * @param node The node to check
+     * @return {@code true} if {@link #cacheAdditionalInformation} would get more
+     *         information for the node
+     */
+    public boolean needsAdditionalInformation(N node) {
+        return false;
+    }
+
+    /**
+     * Cache additional information for a node in the background
+     *
+     * @param node     to get information from
+     * @param prefetch {@code true} if the user did not ask for the information
+     *                 yet. Prefetches use their own queue, so that the information
+     *                 the user asked for is not waiting on them.
+     * @return The future for {@link #cacheAdditionalInformation}, completed with
+     *         {@code false} if the node does not need more information
+     */
+    public CompletableFuture<Boolean> cacheAdditionalInformationAsync(N node, boolean prefetch) {
+        if (!needsAdditionalInformation(node)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        // Use a separate queue, so that details are not waiting on tile downloads
+        return FetchScheduler.submit((prefetch ? "prefetch:" : "details:") + FetchScheduler.getHost(getBaseApi()),
+                () -> cacheAdditionalInformation(node));
+    }
+
     /**
      * Get a username from an {@code OsmPrimitiveId} as a {@code Long}
      *
@@ -176,25 +472,9 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
      * @return The username
      */
     protected static String getUserName(long objId) {
-        OsmPrimitive osm = new Node();
-        osm.setOsmId(objId, 1);
-        ArrayList<OsmDataLayer> layers = new ArrayList<>(
-                MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class));
-        for (OsmDataLayer layer : layers) {
-            OsmPrimitive rosm = layer.data.getPrimitiveById(osm.getOsmPrimitiveId());
-            if (rosm != null) {
-                osm = rosm;
-                break;
-            }
-        }
-        User user = osm.getUser();
-        String userName;
-        if (user == null) {
-            userName = null;
-        } else {
-            userName = user.getName();
-        }
-        return getUserName(userName);
+        final OsmPrimitive osm = OsmPrimitiveIndex.getPrimitive(new SimplePrimitiveId(objId, OsmPrimitiveType.NODE));
+        final User user = osm == null ? null : osm.getUser();
+        return getUserName(user == null ? null : user.getName());
     }
 
     /**
@@ -237,14 +517,129 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
     public abstract List<JButton> getActions(N selectedNode);
 
     /**
-     * Redraw error layers
+     * Get the URL that tells the error source about an action
+     *
+     * @param node   The node the action was taken on
+     * @param action The action
+     * @return The URL to connect to
+     */
+    protected abstract String getActionUrl(N node, IssueAction action);
+
+    /**
+     * Update a node for an action, e.g. so that it is drawn with another icon
+     *
+     * @param node   The node the action was taken on
+     * @param action The action
+     */
+    protected abstract void applyAction(N node, IssueAction action);
+
+    /**
+     * Get the action taken on a node
+     *
+     * @param node The node
+     * @return The action, or {@code null} if no action was taken
+     */
+    public IssueAction getActionTaken(N node) {
+        final String actionTaken = node.get(ACTION_TAKEN);
+        if ("true".equals(actionTaken)) {
+            return IssueAction.FIXED;
+        } else if ("false".equals(actionTaken)) {
+            return IssueAction.FALSE_POSITIVE;
+        }
+        return null;
+    }
+
+    /**
+     * Take an action on nodes, and send it to the error source
+     *
+     * @param nodes  The nodes to take the action on
+     * @param action The action
+     * @return The futures for the status after the first attempt to send the
+     *         action for each node
+     * @see #markAction(Collection, IssueAction)
+     * @see #sendActions(Collection, IssueAction)
+     */
+    public List<CompletableFuture<Outbox.Status>> takeAction(Collection<N> nodes, IssueAction action) {
+        markAction(nodes, action);
+        return sendActions(nodes, action);
+    }
+
+    /**
+     * Update nodes for an action. The layers are redrawn and the changeset tag is
+     * updated once for all of them. This should be called on the EDT.
+     *
+     * @param nodes  The nodes the action was taken on
+     * @param action The action
+     */
+    public void markAction(Collection<N> nodes, IssueAction action) {
+        final List<String> ids = new ArrayList<>(nodes.size());
+        for (N node : nodes) {
+            setAction(node, action);
+            ids.add(node.get(ERROR_ID));
+        }
+        // The icon keys changed, so the clusters must be updated
+        for (ErrorLayer layer : MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class)) {
+            layer.nodesChanged(nodes);
+        }
+        redrawErrorLayers(getName());
+        if (action == IssueAction.FIXED) {
+            addChangeSetTag(getName().toLowerCase(Locale.US), ids);
+        }
+    }
+
+    private void setAction(N node, IssueAction action) {
+        node.put(ACTION_TAKEN, Boolean.toString(action == IssueAction.FIXED));
+        applyAction(node, action);
+    }
+
+    /**
+     * Update downloaded nodes for the actions that were taken on them, but that
+     * the error source may not know about yet (see {@link Outbox})
+     *
+     * @param dataSet The downloaded nodes
+     */
+    void restoreActions(D dataSet) {
+        for (N node : dataSet.allPrimitives()) {
+            final String issue = getOutboxIssue(node);
+            final String name = Outbox.getAction(issue);
+            if (name != null && node.get(ACTION_TAKEN) == null && Outbox.getStatus(issue) != Outbox.Status.FAILED) {
+                Stream.of(IssueAction.values()).filter(value -> value.name().equals(name)).findFirst()
+                        .ifPresent(action -> setAction(node, action));
+            }
+        }
+    }
+
+    /**
+     * Send an action for nodes to the error source in the background. The actions
+     * are retried until they are sent, even after a restart (see {@link Outbox}).
+     * This does not need to be called on the EDT.
+     *
+     * @param nodes  The nodes the action was taken on
+     * @param action The action
+     * @return The futures for the status after the first attempt to send the
+     *         action for each node
+     */
+    public List<CompletableFuture<Outbox.Status>> sendActions(Collection<N> nodes, IssueAction action) {
+        final List<Outbox.Entry> entries = new ArrayList<>(nodes.size());
+        for (N node : nodes) {
+            entries.add(new Outbox.Entry(getOutboxIssue(node), action.name(), getActionUrl(node, action)));
+        }
+        return Outbox.submitAll(entries);
+    }
+
+    private String getOutboxIssue(N node) {
+        return getName() + ':' + node.getIdentifier();
+    }
+
+    /**
+     * Redraw the markers of the error layers
      *
      * @param name of the layer to redraw
      */
     public static void redrawErrorLayers(String name) {
         List<ErrorLayer> layers = MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class);
         for (ErrorLayer layer : layers) {
-            layer.invalidate();
+            layer.markersChanged();
         }
     }
 
@@ -255,29 +650,6 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
      */
     public abstract D createNewDataSet();
 
-    protected static class SendInformation implements Runnable {
-        final String url;
-
-        public SendInformation(String url) {
-            this.url = url;
-        }
-
-        @Override
-        public void run() {
-            HttpClient client = null;
-            try {
-                client = HttpClient.create(URI.create(this.url).toURL());
-                client.connect();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            } finally {
-                if (client != null) {
-                    client.disconnect();
-                }
-            }
-        }
-    }
-
     /**
      * Add a changeset tag to a layer
      *
@@ -285,6 +657,17 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
      * @param id     The id from the source
      */
     public static void addChangeSetTag(String source, String id) {
+        addChangeSetTag(source, id == null ? null : Collections.singletonList(id));
+    }
+
+    /**
+     * Add a changeset tag for several ids from a source to a layer. Ids that do
+     * not fit in the tag are left out.
+     *
+     * @param source The source to add
+     * @param ids    The ids from the source
+     */
+    public static void addChangeSetTag(String source, Collection<String> ids) {
         DataSet data = MainApplication.getLayerManager().getActiveDataSet();
         // TODO figure out if we want to keep this
         boolean addChangesetTags = Config.getPref().getBoolean(OpenQA.PREF_PREFIX.concat("changesetTags"), false);
@@ -292,19 +675,44 @@ public abstract class GenericInformation<I, N extends OpenQANode<I>, D extends O
             Map<String, String> tags = data.getChangeSetTags();
             String key = OpenQA.NAME.toLowerCase(Locale.US);
             // Clear the changeset tag if needed
-            if (source == null || id == null) {
+            if (source == null || ids == null) {
                 data.addChangeSetTag(key, "");
                 return;
             }
             if (data.isModified()) {
-                String addTag = source.concat("-").concat(id);
-                if (tags.containsKey(key) && !tags.get(key).trim().isEmpty()) {
-                    addTag = tags.get(key).concat(",").concat(addTag);
-                }
-                data.addChangeSetTag(key, addTag);
+                data.addChangeSetTag(key, appendChangeSetTag(tags.get(key), source, ids));
             } else {
                 data.addChangeSetTag(key, "");
             }
         }
     }
+
+    /**
+     * Append ids from a source to the value of a changeset tag. Ids that would make
+     * the value longer than {@value #MAX_TAG_LENGTH} characters are left out.
+     *
+     * @param existing The current value of the tag, may be {@code null}
+     * @param source   The source to add
+     * @param ids      The ids from the source
+     * @return The new value of the tag
+     */
+    static String appendChangeSetTag(String existing, String source, Collection<String> ids) {
+        final StringBuilder addTag = new StringBuilder();
+        if (existing != null) {
+            addTag.append(existing.trim());
+        }
+        for (String id : ids) {
+            final String value = source.concat("-").concat(id);
+            final int separator = addTag.length() > 0 ? 1 : 0;
+            if (addTag.length() + separator + value.length() > MAX_TAG_LENGTH) {
+                Logging.warn(tr("The {0} changeset tag is full", OpenQA.NAME.toLowerCase(Locale.US)));
+                break;
+            }
+            if (separator > 0) {
+                addTag.append(',');
+            }
+            addTag.append(value);
+        }
+        return addTag.toString();
+    }
 }
@@ -1,9 +1,9 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa.profiles;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.Map;
 import java.util.Objects;
 
@@ -15,22 +15,29 @@ import org.openstreetmap.josm.data.osm.TagMap;
 import org.openstreetmap.josm.data.osm.Tagged;
 
 /**
- * The base QA node type
+ * The base QA node type. Since there may be hundreds of thousands of nodes,
+ * the per node state is kept compact: the flags are packed into a byte, and the
+ * tags are kept in a single array of key/value pairs (like
+ * {@link org.openstreetmap.josm.data.osm.AbstractPrimitive}) with the strings
+ * shared between nodes through a {@link TagDictionary}.
  *
  * @param <I> The unique identifier
  */
 public class OpenQANode<I> implements Comparable<OpenQANode<?>>, IQuadBucketType, ICoordinate, ILatLon, Tagged {
 
-    private enum Flags {
-        SELECTED, MODIFIED
-    }
+    private static final byte FLAG_SELECTED = 1;
+    private static final byte FLAG_MODIFIED = 1 << 1;
+    private static final String[] EMPTY_TAGS = new String[0];
 
     private final I identifier;
-    private final EnumSet<Flags> flags = EnumSet.noneOf(Flags.class);
+    private byte flags;
     private final double lon;
     private final double lat;
     private volatile BBox cachedBBox;
-    private final TagMap tagMap = new TagMap();
+    /** The tags as {@code key, value, key, value, ...}. This array is never modified, only replaced. */
+    private volatile String[] tags = EMPTY_TAGS;
+    /** Incremented whenever the tags change */
+    private volatile int modificationStamp;
 
     protected OpenQANode(I identifier, double lat, double lon) {
         Objects.requireNonNull(identifier);
@@ -85,73 +92,152 @@ public class OpenQANode<I> implements Comparable<OpenQANode<?>>, IQuadBucketType
         return this.identifier;
     }
 
-    private boolean setFlag(Flags flag, boolean value) {
-        if (value) {
-            return this.flags.add(flag);
-        }
-        return this.flags.remove(flag);
+    private synchronized boolean setFlag(byte flag, boolean value) {
+        final byte old = this.flags;
+        this.flags = (byte) (value ? old | flag : old & ~flag);
+        return old != this.flags;
     }
 
     public boolean isModified() {
-        return this.flags.contains(Flags.MODIFIED);
+        return (this.flags & FLAG_MODIFIED) != 0;
     }
 
     public boolean setModified(boolean modified) {
-        return setFlag(Flags.MODIFIED, modified);
+        return setFlag(FLAG_MODIFIED, modified);
     }
 
     public boolean isSelected() {
-        return this.flags.contains(Flags.SELECTED);
+        return (this.flags & FLAG_SELECTED) != 0;
     }
 
     public boolean setSelected(boolean selected) {
-        return setFlag(Flags.SELECTED, selected);
+        return setFlag(FLAG_SELECTED, selected);
     }
 
     @Override
-    public void setKeys(Map<String, String> keys) {
-        this.tagMap.clear();
-        this.tagMap.putAll(keys);
+    public synchronized void setKeys(Map<String, String> keys) {
+        this.modificationStamp++;
+        if (keys == null || keys.isEmpty()) {
+            this.tags = EMPTY_TAGS;
+            return;
+        }
+        final String[] newTags = new String[keys.size() * 2];
+        int index = 0;
+        for (Map.Entry<String, String> entry : keys.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                newTags[index++] = TagDictionary.key(entry.getKey());
+                newTags[index++] = TagDictionary.value(entry.getValue());
+            }
+        }
+        this.tags = index == newTags.length ? newTags : Arrays.copyOf(newTags, index);
     }
 
     @Override
     public Map<String, String> getKeys() {
-        return Collections.unmodifiableMap(this.tagMap);
+        return Collections.unmodifiableMap(new TagMap(this.tags));
     }
 
     @Override
-    public void put(String key, String value) {
-        this.tagMap.put(key, value);
+    public synchronized void put(String key, String value) {
+        if (key == null) {
+            return;
+        } else if (value == null) {
+            remove(key);
+            return;
+        }
+        final String[] oldTags = this.tags;
+        final int index = indexOf(oldTags, key);
+        final String[] newTags;
+        if (index >= 0) {
+            newTags = oldTags.clone();
+        } else {
+            newTags = Arrays.copyOf(oldTags, oldTags.length + 2);
+            newTags[oldTags.length] = TagDictionary.key(key);
+        }
+        newTags[index >= 0 ? index + 1 : oldTags.length + 1] = TagDictionary.value(value);
+        this.tags = newTags;
+        this.modificationStamp++;
     }
 
     @Override
     public String get(String key) {
-        return this.tagMap.get(key);
+        final String[] currentTags = this.tags;
+        final int index = indexOf(currentTags, key);
+        return index >= 0 ? currentTags[index + 1] : null;
     }
 
     @Override
-    public void remove(String key) {
-        this.tagMap.remove(key);
+    public synchronized void remove(String key) {
+        final String[] oldTags = this.tags;
+        final int index = indexOf(oldTags, key);
+        if (index < 0) {
+            return;
+        }
+        final String[] newTags = new String[oldTags.length - 2];
+        System.arraycopy(oldTags, 0, newTags, 0, index);
+        System.arraycopy(oldTags, index + 2, newTags, index, oldTags.length - index - 2);
+        this.tags = newTags;
+        this.modificationStamp++;
+    }
+
+    private static int indexOf(String[] tags, String key) {
+        for (int i = 0; i < tags.length; i += 2) {
+            if (tags[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     @Override
     public boolean hasKeys() {
-        return !this.tagMap.isEmpty();
+        return this.tags.length > 0;
     }
 
     @Override
     public Collection<String> keySet() {
-        return this.tagMap.keySet();
+        return getKeys().keySet();
     }
 
     @Override
     public int getNumKeys() {
-        return this.tagMap.size();
+        return this.tags.length / 2;
     }
 
     @Override
-    public void removeAll() {
-        this.tagMap.clear();
+    public synchronized void removeAll() {
+        this.tags = EMPTY_TAGS;
+        this.modificationStamp++;
+    }
+
+    /**
+     * Update this node with the information of a newer copy of it, e.g. after a
+     * refresh. Subclasses that keep information outside of the tags must copy it
+     * as well.
+     *
+     * @param other The newer copy of this node
+     */
+    public synchronized void mergeFrom(OpenQANode<I> other) {
+        setKeys(other.getKeys());
+    }
+
+    /**
+     * Get the modification stamp of this node. The stamp changes whenever the tags
+     * (or other information of subclasses) are changed, so that information
+     * derived from them can be cached.
+     *
+     * @return The modification stamp
+     */
+    public int getModificationStamp() {
+        return this.modificationStamp;
+    }
+
+    /**
+     * Change the modification stamp, for subclasses that keep information outside
+     * of the tags
+     */
+    protected final synchronized void updateModificationStamp() {
+        this.modificationStamp++;
     }
 
     @Override
@@ -0,0 +1,432 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.HttpClient;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.kaart.openqa.ErrorLayer;
+import com.kaart.openqa.OpenQA;
+
+/**
+ * Send the actions taken on issues to the error sources in the background.
+ * Actions that could not be sent are retried with an increasing delay, and
+ * actions that have not been sent yet are saved to disk, so that they are sent
+ * after a restart. Only the latest action for an issue is kept.
+ *
+ * @author Taylor Smock
+ */
+public final class Outbox {
+    /** The delay (ms) before the first retry of an action */
+    private static final long INITIAL_RETRY_DELAY = 5_000;
+    /** The longest delay (ms) between retries of an action */
+    private static final long MAX_RETRY_DELAY = 600_000;
+    /** The number of attempts before an action is given up on */
+    static final int MAX_ATTEMPTS = 10;
+    /** The number of sent or failed actions to keep the status of */
+    static final int MAX_FINISHED = 1000;
+    private static final String FILE_NAME = "outbox.txt";
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * The status of an action
+     */
+    public enum Status {
+        /** The action is being sent */
+        SENDING,
+        /** The action could not be sent, and will be sent again */
+        RETRYING,
+        /** The action was sent */
+        SENT,
+        /** The action could not be sent, and will not be sent again */
+        FAILED;
+
+        /**
+         * Get the text to show to the user
+         *
+         * @return The translated status
+         */
+        public String getDisplayName() {
+            switch (this) {
+            case SENDING:
+                return tr("sending");
+            case RETRYING:
+                return tr("waiting to retry");
+            case SENT:
+                return tr("sent");
+            default:
+                return tr("failed");
+            }
+        }
+    }
+
+    /**
+     * An action for an issue
+     */
+    static final class Entry {
+        private final String issue;
+        private final String action;
+        private final String url;
+        /** Completed with the status after the first attempt to send the action */
+        private final CompletableFuture<Status> firstAttempt = new CompletableFuture<>();
+        private int attempts;
+        private Status status = Status.SENDING;
+
+        Entry(String issue, String action, String url) {
+            this.issue = issue;
+            this.action = action;
+            this.url = url;
+        }
+
+        String getIssue() {
+            return this.issue;
+        }
+
+        String getAction() {
+            return this.action;
+        }
+
+        String getUrl() {
+            return this.url;
+        }
+
+        CompletableFuture<Status> getFirstAttempt() {
+            return this.firstAttempt;
+        }
+    }
+
+    /** The latest action for each issue that is being sent. Guarded by {@code Outbox.class}. */
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>();
+    /**
+     * The most recent actions that were sent or failed, so that their status can
+     * still be shown. Guarded by {@code Outbox.class}.
+     */
+    private static final Map<String, Entry> FINISHED = new LinkedHashMap<String, Entry>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_FINISHED;
+        }
+    };
+    private static final ScheduledExecutorService RETRY_EXECUTOR = Executors
+            .newSingleThreadScheduledExecutor(Utils.newThreadFactory("openqa-outbox-%d", Thread.NORM_PRIORITY));
+    /** Incremented whenever the status of an action changes */
+    private static final AtomicLong VERSION = new AtomicLong();
+    /** {@code true} if the layers will be redrawn for the latest changes */
+    private static final AtomicBoolean REDRAW_SCHEDULED = new AtomicBoolean();
+    /** The file with the actions that were not sent yet, {@code null} until {@link #start()} */
+    private static Path file;
+    /** {@code true} if the file will be written. Guarded by {@code Outbox.class}. */
+    private static boolean saveScheduled;
+
+    private Outbox() {
+        // Hide the constructor
+    }
+
+    /**
+     * Read the actions that were not sent before the last exit, and send them
+     */
+    public static void start() {
+        final List<Entry> loaded;
+        synchronized (Outbox.class) {
+            if (file != null) {
+                return;
+            }
+            file = new File(new File(Config.getDirs().getUserDataDirectory(true), OpenQA.NAME.toLowerCase(Locale.ROOT)),
+                    FILE_NAME).toPath();
+            loaded = read(file);
+            for (Entry entry : loaded) {
+                ENTRIES.putIfAbsent(entry.issue, entry);
+            }
+        }
+        if (!loaded.isEmpty()) {
+            changed();
+        }
+        loaded.forEach(Outbox::send);
+    }
+
+    /**
+     * Send an action for an issue. This replaces any earlier action for the issue
+     * that was not sent yet.
+     *
+     * @param issue  The issue, unique across the error sources
+     * @param action The action that was taken
+     * @param url    The url that tells the error source about the action
+     * @return The future for the status after the first attempt to send the
+     *         action ({@link Status#SENT}, {@link Status#RETRYING} or
+     *         {@link Status#FAILED})
+     */
+    public static CompletableFuture<Status> submit(String issue, String action, String url) {
+        return submitAll(Collections.singletonList(new Entry(issue, action, url))).get(0);
+    }
+
+    /**
+     * Send actions for many issues. The outbox is saved and the layers are
+     * redrawn once for all of them.
+     *
+     * @param entries The actions to send
+     * @return The futures for the status after the first attempt to send each
+     *         action, in the same order as the actions
+     * @see #submit(String, String, String)
+     */
+    static List<CompletableFuture<Status>> submitAll(List<Entry> entries) {
+        add(entries);
+        final List<CompletableFuture<Status>> firstAttempts = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            send(entry);
+            firstAttempts.add(entry.firstAttempt);
+        }
+        return firstAttempts;
+    }
+
+    /**
+     * Add actions without sending them
+     *
+     * @param entries The actions to add
+     */
+    static void add(List<Entry> entries) {
+        synchronized (Outbox.class) {
+            for (Entry entry : entries) {
+                final Entry replaced = ENTRIES.remove(entry.issue);
+                if (replaced != null) {
+                    replaced.firstAttempt.complete(replaced.status);
+                }
+                FINISHED.remove(entry.issue);
+                ENTRIES.put(entry.issue, entry);
+            }
+            save();
+        }
+        changed();
+    }
+
+    /**
+     * Get the status of the latest action for an issue
+     *
+     * @param issue The issue
+     * @return The status, or {@code null} if no action was taken since the start
+     */
+    public static synchronized Status getStatus(String issue) {
+        final Entry entry = getEntry(issue);
+        return entry == null ? null : entry.status;
+    }
+
+    /**
+     * Get the latest action for an issue
+     *
+     * @param issue The issue
+     * @return The action, or {@code null} if no action was taken since the start
+     */
+    public static synchronized String getAction(String issue) {
+        final Entry entry = getEntry(issue);
+        return entry == null ? null : entry.action;
+    }
+
+    private static Entry getEntry(String issue) {
+        final Entry entry = ENTRIES.get(issue);
+        return entry == null ? FINISHED.get(issue) : entry;
+    }
+
+    /**
+     * Get a number that changes whenever the status of an action changes
+     *
+     * @return The version of the outbox
+     */
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    private static void send(Entry entry) {
+        // Use a separate queue, so that actions are not waiting on downloads
+        FetchScheduler.submit("outbox:" + FetchScheduler.getHost(entry.url), () -> connect(entry.url))
+                .whenComplete((responseCode, throwable) -> completed(entry, responseCode, throwable));
+    }
+
+    private static int connect(String url) throws IOException {
+        final HttpClient client = HttpClient.create(URI.create(url).toURL());
+        try {
+            return client.connect().getResponseCode();
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    /**
+     * Update an action after an attempt to send it
+     *
+     * @param entry        The action
+     * @param responseCode The response code, or {@code null} if the action could
+     *                     not be sent
+     * @param throwable    The reason the action could not be sent, or {@code null}
+     */
+    static void completed(Entry entry, Integer responseCode, Throwable throwable) {
+        synchronized (Outbox.class) {
+            if (ENTRIES.get(entry.issue) != entry) {
+                // A newer action replaced this one
+                return;
+            }
+            entry.attempts++;
+            if (throwable == null && responseCode < 400) {
+                entry.status = Status.SENT;
+            } else if (throwable == null && responseCode < 500) {
+                // The error source will not accept the action if it is sent again
+                Logging.warn(tr("{0} was rejected with {1}", entry.url, responseCode));
+                entry.status = Status.FAILED;
+            } else if (entry.attempts >= MAX_ATTEMPTS) {
+                Logging.warn(tr("{0} could not be sent after {1} attempts", entry.url, entry.attempts));
+                entry.status = Status.FAILED;
+            } else {
+                Logging.debug(throwable);
+                entry.status = Status.RETRYING;
+                RETRY_EXECUTOR.schedule(() -> retry(entry), getRetryDelay(entry.attempts), TimeUnit.MILLISECONDS);
+            }
+            if (entry.status == Status.SENT || entry.status == Status.FAILED) {
+                // Only the status is needed from now on
+                ENTRIES.remove(entry.issue);
+                FINISHED.put(entry.issue, entry);
+            }
+            save();
+        }
+        entry.firstAttempt.complete(entry.status);
+        changed();
+    }
+
+    private static void retry(Entry entry) {
+        synchronized (Outbox.class) {
+            if (ENTRIES.get(entry.issue) != entry) {
+                return;
+            }
+            entry.status = Status.SENDING;
+        }
+        changed();
+        send(entry);
+    }
+
+    /**
+     * Get the delay before the next attempt to send an action
+     *
+     * @param attempts The number of attempts so far
+     * @return The delay in milliseconds
+     */
+    static long getRetryDelay(int attempts) {
+        // Doubling more than 20 times is well past the longest delay
+        final int doublings = Math.min(20, Math.max(0, attempts - 1));
+        return Math.min(MAX_RETRY_DELAY, INITIAL_RETRY_DELAY << doublings);
+    }
+
+    private static void changed() {
+        VERSION.incrementAndGet();
+        // Many actions may finish at once, so only redraw once for all of them
+        if (REDRAW_SCHEDULED.compareAndSet(false, true)) {
+            GuiHelper.runInEDT(() -> {
+                REDRAW_SCHEDULED.set(false);
+                // Only the status shown for the issues changed, not the markers
+                MainApplication.getLayerManager().getLayersOfType(ErrorLayer.class).forEach(ErrorLayer::invalidate);
+            });
+        }
+    }
+
+    /**
+     * Save the actions that were not sent yet in the background. Changes made
+     * before the file is written are saved together. Must be called with the lock
+     * held.
+     */
+    private static void save() {
+        if (file == null || saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        RETRY_EXECUTOR.execute(Outbox::writePending);
+    }
+
+    private static void writePending() {
+        final Path path;
+        final List<Entry> pending = new ArrayList<>();
+        synchronized (Outbox.class) {
+            // Changes made from now on need another write
+            saveScheduled = false;
+            path = file;
+            for (Entry entry : ENTRIES.values()) {
+                if (entry.status == Status.SENDING || entry.status == Status.RETRYING) {
+                    pending.add(entry);
+                }
+            }
+        }
+        try {
+            write(path, pending);
+        } catch (IOException e) {
+            Logging.error(e);
+        }
+    }
+
+    /**
+     * Write actions to a file
+     *
+     * @param path    The file to write
+     * @param entries The actions to write
+     * @throws IOException if the file could not be written
+     */
+    static void write(Path path, List<Entry> entries) throws IOException {
+        final List<String> lines = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            lines.add(String.join(SEPARATOR, entry.issue, entry.action, entry.url));
+        }
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        // Write the whole file first, so that a crash cannot leave a partial file
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Read actions from a file
+     *
+     * @param path The file to read
+     * @return The actions, which is empty if the file does not exist or cannot be
+     *         read
+     */
+    static List<Entry> read(Path path) {
+        final List<Entry> entries = new ArrayList<>();
+        if (!Files.isRegularFile(path)) {
+            return entries;
+        }
+        try {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                final String[] fields = line.split(SEPARATOR, 3);
+                if (fields.length == 3) {
+                    entries.add(new Entry(fields[0], fields[1], fields[2]));
+                } else if (!line.trim().isEmpty()) {
+                    Logging.warn(tr("Ignoring unreadable outbox entry: {0}", line));
+                }
+            }
+        } catch (IOException e) {
+            Logging.error(e);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,56 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A shared dictionary for the tags of {@link OpenQANode}s. The same keys and
+ * short values (error types, levels, object types, ...) are repeated for
+ * almost every issue, but each parsed response creates new strings for them.
+ * This dictionary lets all nodes share a single instance of each string.
+ *
+ * @author Taylor Smock
+ */
+final class TagDictionary {
+    /** Long values are usually unique (descriptions, lists of ids), so they are not worth sharing */
+    private static final int MAX_VALUE_LENGTH = 24;
+    /** The maximum number of strings, so that unique short values cannot grow the dictionary without limit */
+    private static final int MAX_SIZE = 1 << 16;
+    private static final Map<String, String> DICTIONARY = new ConcurrentHashMap<>();
+
+    private TagDictionary() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get the shared instance of a key
+     *
+     * @param key The key
+     * @return The shared instance
+     */
+    static String key(String key) {
+        return key == null ? null : key.intern();
+    }
+
+    /**
+     * Get the shared instance of a value, if it is worth sharing
+     *
+     * @param value The value
+     * @return The shared instance, or {@code value}
+     */
+    static String value(String value) {
+        if (value == null || value.length() > MAX_VALUE_LENGTH) {
+            return value;
+        }
+        final String shared = DICTIONARY.get(value);
+        if (shared != null) {
+            return shared;
+        }
+        if (DICTIONARY.size() >= MAX_SIZE) {
+            return value;
+        }
+        final String previous = DICTIONARY.putIfAbsent(value, value);
+        return previous == null ? value : previous;
+    }
+}
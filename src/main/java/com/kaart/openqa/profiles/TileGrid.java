@@ -0,0 +1,181 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+import com.kaart.openqa.OpenQA;
+
+/**
+ * Split bounds into fixed grid (slippy map) tiles. Since the tiles do not
+ * depend on the exact bounds that were requested, overlapping downloads share
+ * their tiles, and with them the {@link com.kaart.openqa.OpenQACache} entries.
+ *
+ * @author Taylor Smock
+ */
+public final class TileGrid {
+    /** The preference key for the zoom level of the tiles. A negative zoom disables tiling. */
+    public static final String PREF_TILE_ZOOM = OpenQA.PREF_PREFIX.concat("tileZoom");
+    /** The preference key for the maximum number of tiles for a single update */
+    public static final String PREF_MAX_TILES = OpenQA.PREF_PREFIX.concat("maxTiles");
+    private static final int DEFAULT_TILE_ZOOM = 12;
+    private static final int DEFAULT_MAX_TILES = 256;
+    /** The maximum zoom level, so that tile keys fit in a long */
+    private static final int MAX_ZOOM = 28;
+    /** The maximum latitude of web mercator tiles */
+    private static final double MAX_LAT = 85.05112877980659;
+
+    private TileGrid() {
+        // Hide the constructor
+    }
+
+    /**
+     * Get the tiles for bounds, using the zoom level from the preferences
+     *
+     * @param bounds The bounds to split into tiles
+     * @return The tiles covering the bounds
+     */
+    public static List<Bounds> getTiles(Collection<Bounds> bounds) {
+        final int zoom = Config.getPref().getInt(PREF_TILE_ZOOM, DEFAULT_TILE_ZOOM);
+        if (zoom < 0) {
+            return new ArrayList<>(bounds);
+        }
+        return getTiles(bounds, zoom, Config.getPref().getInt(PREF_MAX_TILES, DEFAULT_MAX_TILES));
+    }
+
+    /**
+     * Get the tiles for bounds. If there would be more than {@code maxTiles}
+     * tiles, a lower zoom level is used.
+     *
+     * @param bounds   The bounds to split into tiles
+     * @param zoom     The zoom level of the tiles
+     * @param maxTiles The maximum number of tiles to return
+     * @return The tiles covering the bounds
+     */
+    static List<Bounds> getTiles(Collection<Bounds> bounds, int zoom, int maxTiles) {
+        for (int z = Math.min(zoom, MAX_ZOOM); z >= 0; z--) {
+            final Set<Long> tiles = new LinkedHashSet<>();
+            for (Bounds bound : bounds) {
+                addTiles(tiles, bound, z);
+            }
+            if (tiles.size() <= maxTiles || z == 0) {
+                final List<Bounds> tileBounds = new ArrayList<>(tiles.size());
+                for (long tile : tiles) {
+                    tileBounds.add(getTileBounds(tile));
+                }
+                return tileBounds;
+            }
+        }
+        return new ArrayList<>(bounds);
+    }
+
+    /**
+     * Split bounds into four equal quadrants, e.g. when a source cannot return
+     * all the errors in the bounds at once
+     *
+     * @param bound The bounds to split
+     * @return The quadrants, which cover the bounds
+     */
+    public static List<Bounds> getQuadrants(Bounds bound) {
+        final double midLat = (bound.getMinLat() + bound.getMaxLat()) / 2;
+        final double midLon = (bound.getMinLon() + bound.getMaxLon()) / 2;
+        final List<Bounds> quadrants = new ArrayList<>(4);
+        quadrants.add(new Bounds(midLat, bound.getMinLon(), bound.getMaxLat(), midLon, false));
+        quadrants.add(new Bounds(midLat, midLon, bound.getMaxLat(), bound.getMaxLon(), false));
+        quadrants.add(new Bounds(bound.getMinLat(), bound.getMinLon(), midLat, midLon, false));
+        quadrants.add(new Bounds(bound.getMinLat(), midLon, midLat, bound.getMaxLon(), false));
+        return quadrants;
+    }
+
+    private static void addTiles(Set<Long> tiles, Bounds bound, int zoom) {
+        final int minX = lonToTileX(bound.getMinLon(), zoom);
+        int maxX = lonToTileX(bound.getMaxLon(), zoom);
+        final int minY = latToTileY(bound.getMaxLat(), zoom);
+        int maxY = latToTileY(bound.getMinLat(), zoom);
+        // Don't add the next tile when the bound ends exactly on a tile edge
+        if (maxX > minX && tileXToLon(maxX, zoom) == bound.getMaxLon()) {
+            maxX--;
+        }
+        if (maxY > minY && tileYToLat(maxY, zoom) == bound.getMinLat()) {
+            maxY--;
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                tiles.add(getTileKey(x, y, zoom));
+            }
+        }
+    }
+
+    /**
+     * Get a unique key for a tile
+     *
+     * @param x    The x of the tile
+     * @param y    The y of the tile
+     * @param zoom The zoom of the tile
+     * @return The key for the tile
+     */
+    static long getTileKey(int x, int y, int zoom) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    /**
+     * Get the bounds for a tile key
+     *
+     * @param tileKey The key from {@link #getTileKey(int, int, int)}
+     * @return The bounds of the tile
+     */
+    static Bounds getTileBounds(long tileKey) {
+        final int zoom = (int) (tileKey >>> 58);
+        final int x = (int) ((tileKey >>> 29) & ((1 << 29) - 1));
+        final int y = (int) (tileKey & ((1 << 29) - 1));
+        // Don't round to OSM precision, since the tile edges would no longer line up
+        return new Bounds(tileYToLat(y + 1, zoom), tileXToLon(x, zoom), tileYToLat(y, zoom), tileXToLon(x + 1, zoom),
+                false);
+    }
+
+    static int lonToTileX(double lon, int zoom) {
+        final int n = 1 << zoom;
+        int x = clamp((int) Math.floor((lon + 180) / 360 * n), n);
+        // Make the result consistent with tileXToLon, which may round differently
+        while (x + 1 < n && tileXToLon(x + 1, zoom) <= lon) {
+            x++;
+        }
+        while (x > 0 && tileXToLon(x, zoom) > lon) {
+            x--;
+        }
+        return x;
+    }
+
+    static int latToTileY(double lat, int zoom) {
+        final int n = 1 << zoom;
+        final double latRad = Math.toRadians(Math.max(-MAX_LAT, Math.min(MAX_LAT, lat)));
+        int y = clamp((int) Math.floor((1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * n), n);
+        // Make the result consistent with tileYToLat, which may round differently
+        while (y + 1 < n && tileYToLat(y + 1, zoom) >= lat) {
+            y++;
+        }
+        while (y > 0 && tileYToLat(y, zoom) < lat) {
+            y--;
+        }
+        return y;
+    }
+
+    static double tileXToLon(int x, int zoom) {
+        return x / (double) (1 << zoom) * 360 - 180;
+    }
+
+    static double tileYToLat(int y, int zoom) {
+        final double mercator = Math.PI - 2 * Math.PI * y / (1 << zoom);
+        return Math.toDegrees(Math.atan(Math.sinh(mercator)));
+    }
+
+    private static int clamp(int tile, int n) {
+        return Math.max(0, Math.min(n - 1, tile));
+    }
+}
@@ -1,10 +1,17 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa.profiles.keepright;
 
+import com.kaart.openqa.LongIdentifierIndex;
 import com.kaart.openqa.OpenQADataSet;
 
 /**
  * The dataset for KeepRight
  */
 public class KeepRightDataSet extends OpenQADataSet<Long, KeepRightNode> {
+    /**
+     * Create a new dataset
+     */
+    public KeepRightDataSet() {
+        super(new LongIdentifierIndex<>());
+    }
 }
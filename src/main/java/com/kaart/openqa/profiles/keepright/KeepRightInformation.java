@@ -14,6 +14,7 @@ import java.io.InputStream;
 import java.net.SocketException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.NavigableMap;
@@ -157,48 +158,22 @@ public class KeepRightInformation extends GenericInformation<Long, KeepRightNode
         return "KeepRight";
     }
 
-    private InputStream getBounds(String type, Bounds bound) throws IOException {
-        final String enabled = buildDownloadErrorList();
+    private InputStream getBounds(String type, String enabled, Bounds bound) throws IOException {
         final String url = BASE_API + "format=" + type + "&ch=" + enabled + "&left=" + bound.getMinLon() + "&bottom="
                 + bound.getMinLat() + "&right=" + bound.getMaxLon() + "&top=" + bound.getMaxLat();
-        return OpenQACache.getUrl(url);
+        return getUrl(url, bound);
     }
 
-    private KeepRightDataSet getGeoJsonErrors(Bounds bound) throws IOException {
-        InputStream cache = getBounds("geojson", bound);
+    private KeepRightDataSet getGeoJsonErrors(String enabled, Bounds bound) throws IOException {
+        InputStream cache = getBounds("geojson", enabled, bound);
         return GeoJsonReader.parseDataSet(cache, this::createNewDataSet,
                 (tags, coor) -> new KeepRightNode(Long.parseLong(tags.get(ERROR_ID)), coor));
     }
 
     @Override
-    public KeepRightDataSet getErrors(List<Bounds> bounds, ProgressMonitor inMonitor) {
-        ProgressMonitor monitor = inMonitor.createSubTaskMonitor(0, false);
-        monitor.beginTask(tr("Getting {0} errors", getName()));
-        KeepRightDataSet returnDataSet = null;
-        String windowTitle = tr("Updating {0} information", getName());
-        if (bounds.size() > 10) {
-            monitor.subTask(windowTitle);
-            monitor.setTicksCount(bounds.size());
-            monitor.setTicks(0);
-        } else {
-            monitor.indeterminateSubTask(windowTitle);
-        }
-        for (Bounds bound : bounds) {
-            if (monitor.isCanceled())
-                break;
-            try {
-                KeepRightDataSet ds = getGeoJsonErrors(bound);
-                if (returnDataSet == null) {
-                    returnDataSet = ds;
-                } else if (ds != null) {
-                    returnDataSet.mergeFrom(ds);
-                }
-            } catch (IOException e) {
-                Logging.error(e);
-            }
-        }
-        monitor.finishTask();
-        return returnDataSet;
+    public KeepRightDataSet getErrors(List<Bounds> bounds, ProgressMonitor monitor) {
+        final String enabled = buildDownloadErrorList();
+        return getErrors(bounds, monitor, bound -> getGeoJsonErrors(enabled, bound));
     }
 
     @Override
@@ -248,7 +223,7 @@ public class KeepRightInformation extends GenericInformation<Long, KeepRightNode
     }
 
     @Override
-    public String getNodeToolTip(KeepRightNode node) {
+    protected String createNodeToolTip(KeepRightNode node) {
         StringBuilder sb = new StringBuilder("<html>");
         sb.append(tr(getName())).append(": ").append(node.get("title")).append(" - <a href=")
                 .append(String.format(BASE_ERROR_URL, node.get("schema"), node.get(ERROR_ID))).append(">")
@@ -273,6 +248,17 @@ public class KeepRightInformation extends GenericInformation<Long, KeepRightNode
         return result;
     }
 
+    @Override
+    protected String getActionUrl(KeepRightNode node, IssueAction action) {
+        return String.format(COMMENT_URL, action == IssueAction.FIXED ? FIXED : FALSE_POSITIVE, "", node.get("schema"),
+                node.get(ERROR_ID));
+    }
+
+    @Override
+    protected void applyAction(KeepRightNode node, IssueAction action) {
+        node.put("error_type", action == IssueAction.FIXED ? "zapangel" : "zapdevil");
+    }
+
     @Override
     public List<JButton> getActions(KeepRightNode node) {
         JButton fixed = new JButton();
@@ -283,14 +269,9 @@ public class KeepRightInformation extends GenericInformation<Long, KeepRightNode
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(String.format(COMMENT_URL, FIXED, "", node.get("schema"), node.get(ERROR_ID)))
-                        .run();
-                node.put("actionTaken", "true");
+                takeAction(Collections.singletonList(node), IssueAction.FIXED);
                 fixed.setEnabled(false);
                 falsePositive.setEnabled(true);
-                node.put("error_type", "zapangel");
-                redrawErrorLayers(tr(LAYER_NAME));
-                addChangeSetTag(getName().toLowerCase(Locale.US), node.get(ERROR_ID));
             }
         });
 
@@ -299,23 +280,19 @@ public class KeepRightInformation extends GenericInformation<Long, KeepRightNode
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(
-                        String.format(COMMENT_URL, FALSE_POSITIVE, "", node.get("schema"), node.get(ERROR_ID))).run();
-                node.put("actionTaken", "false");
+                takeAction(Collections.singletonList(node), IssueAction.FALSE_POSITIVE);
                 fixed.setEnabled(true);
                 falsePositive.setEnabled(false);
-                node.put("error_type", "zapdevil");
-                redrawErrorLayers(tr(LAYER_NAME));
             }
         });
 
         fixed.setText(tr("Fixed"));
         falsePositive.setText(tr("False Positive"));
-        if (node.hasKey("actionTaken")) {
-            if ("true".equals(node.get("actionTaken"))) {
+        if (node.hasKey(ACTION_TAKEN)) {
+            if ("true".equals(node.get(ACTION_TAKEN))) {
                 fixed.setEnabled(false);
                 falsePositive.setEnabled(true);
-            } else if ("false".equals(node.get("actionTaken"))) {
+            } else if ("false".equals(node.get(ACTION_TAKEN))) {
                 fixed.setEnabled(true);
                 falsePositive.setEnabled(false);
             }
@@ -4,9 +4,16 @@ package com.kaart.openqa.profiles.osmose;
 import java.util.UUID;
 
 import com.kaart.openqa.OpenQADataSet;
+import com.kaart.openqa.UuidIdentifierIndex;
 
 /**
  * The dataset class for Osmose
  */
 public class OsmoseDataSet extends OpenQADataSet<UUID, OsmoseNode> {
+    /**
+     * Create a new dataset
+     */
+    public OsmoseDataSet() {
+        super(new UuidIdentifierIndex<>());
+    }
 }
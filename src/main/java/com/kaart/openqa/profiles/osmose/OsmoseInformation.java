@@ -6,30 +6,23 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import javax.imageio.ImageIO;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
-import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
-import jakarta.json.JsonReader;
-import jakarta.json.JsonString;
 import jakarta.json.JsonValue;
 import jakarta.json.JsonValue.ValueType;
 import jakarta.json.stream.JsonParser;
 import jakarta.json.stream.JsonParser.Event;
-import jakarta.json.stream.JsonParsingException;
 import javax.swing.AbstractAction;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 
 import java.awt.event.ActionEvent;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -38,34 +31,27 @@ import java.util.Objects;
 import java.util.TreeMap;
 import java.util.UUID;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.apache.commons.jcs3.access.CacheAccess;
 import org.apache.commons.jcs3.engine.behavior.ICompositeCacheAttributes;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.cache.JCSCacheManager;
-import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
-import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
-import org.openstreetmap.josm.data.osm.TagMap;
 import org.openstreetmap.josm.data.osm.User;
-import org.openstreetmap.josm.gui.MainApplication;
-import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.ImageProvider;
 import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
-import org.openstreetmap.josm.tools.JosmRuntimeException;
-import org.openstreetmap.josm.tools.LanguageInfo;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
 import org.openstreetmap.josm.tools.date.DateUtils;
 
 import com.kaart.openqa.OpenQACache;
 import com.kaart.openqa.OpenQADataSet;
+import com.kaart.openqa.OsmPrimitiveIndex;
 import com.kaart.openqa.profiles.GenericInformation;
+import com.kaart.openqa.profiles.TileGrid;
 
 /**
  * The information class for
@@ -93,88 +79,71 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
 
     private static final NavigableMap<String, String> ERROR_MAP = new TreeMap<>();
 
+    /** The maximum number of issues the server returns for a single request */
+    static final int ISSUE_LIMIT = 500;
+    /** The number of times an area is split when it has more issues than {@link #ISSUE_LIMIT} */
+    private static final int MAX_SPLITS = 3;
+
     @Override
     public String getName() {
         return NAME;
     }
 
-    private OsmoseDataSet getGeoJsonErrors(Bounds bound) throws IOException {
-        OsmoseDataSet ds = createNewDataSet();
-        try (JsonParser json = Json.createParser(getFile(bound))) {
-            while (json.hasNext()) {
-                if (json.next() == Event.START_OBJECT) {
-                    JsonObject jobject = json.getObject();
-                    JsonArray errors = jobject.getJsonArray("issues");
-                    for (JsonObject error : errors.getValuesAs(JsonObject.class)) {
-                        final TagMap tagMap = new TagMap();
-                        double lat = Double.MAX_VALUE;
-                        double lon = Double.MAX_VALUE;
-                        for (Map.Entry<String, JsonValue> entry : error.entrySet()) {
-                            String field = entry.getKey();
-                            if ("lat".equals(field)) {
-                                lat = Double.parseDouble(entry.getValue().toString());
-                            } else if ("lon".equals(field)) {
-                                lon = Double.parseDouble(entry.getValue().toString());
-                            } else if (entry.getValue() instanceof JsonString) {
-                                tagMap.put(field, ((JsonString) entry.getValue()).getString());
-                            } else if (!JsonValue.NULL.equals(entry.getValue())) {
-                                tagMap.put(field, entry.getValue().toString());
-                            }
-                        }
-                        tagMap.put(ERROR_ID, tagMap.remove("id"));
-                        final OsmoseNode node = new OsmoseNode(UUID.fromString(tagMap.get(ERROR_ID)), lat, lon);
-                        node.setKeys(tagMap);
-                        if (!ds.containsNode(node)) {
-                            ds.addPrimitive(node);
-                        }
-                    }
-                }
+    private OsmoseDataSet getGeoJsonErrors(String enabled, Bounds bound, int splits) throws IOException {
+        final OsmoseDataSet ds = createNewDataSet();
+        final int[] count = new int[1];
+        OsmoseIssuesReader.readIssues(getFile(enabled, bound), node -> {
+            count[0]++;
+            if (!ds.containsNode(node)) {
+                ds.addPrimitive(node);
             }
+        });
+        if (count[0] < ISSUE_LIMIT) {
+            return ds;
         }
-        return ds;
+        if (splits >= MAX_SPLITS) {
+            Logging.warn(tr("{0} has more issues than can be downloaded in {1}", getName(), bound));
+            ds.setIncomplete(true);
+            return ds;
+        }
+        // The server stopped at the limit, so get the smaller areas instead
+        final OsmoseDataSet quadrants = createNewDataSet();
+        for (Bounds quadrant : TileGrid.getQuadrants(bound)) {
+            final OsmoseDataSet quadrantErrors = getGeoJsonErrors(enabled, quadrant, splits + 1);
+            quadrants.mergeFrom(quadrantErrors);
+            quadrants.setIncomplete(quadrants.isIncomplete() || quadrantErrors.isIncomplete());
+        }
+        return quadrants;
     }
 
-    private InputStream getFile(Bounds bound) throws IOException {
-        String enabled = buildDownloadErrorList();
-        String url = getBaseApi().concat("issues?full=true").concat("&item=").concat(enabled);
+    private InputStream getFile(String enabled, Bounds bound) throws IOException {
+        final String url = getIssuesUrl(getBaseApi(), enabled, bound);
+        Logging.info("Downloading {0}", url);
+        return getUrl(url, bound);
+    }
+
+    /**
+     * Get the URL for the issues in an area
+     *
+     * @param baseApi The base API URL
+     * @param enabled The enabled items
+     * @param bound   The area
+     * @return The URL, which asks for at most {@link #ISSUE_LIMIT} issues
+     */
+    static String getIssuesUrl(String baseApi, String enabled, Bounds bound) {
+        String url = baseApi.concat("issues?full=true").concat("&limit=").concat(Integer.toString(ISSUE_LIMIT));
+        url = url.concat("&item=").concat(enabled);
         url = url.concat("&bbox=").concat(Double.toString(bound.getMinLon()));
         url = url.concat(",").concat(Double.toString(bound.getMinLat()));
         url = url.concat(",").concat(Double.toString(bound.getMaxLon()));
         url = url.concat(",").concat(Double.toString(bound.getMaxLat()));
-        Logging.info("Downloading {0}", url);
-        return OpenQACache.getUrl(url);
+        return url;
     }
 
     @Override
     public OpenQADataSet<UUID, OsmoseNode> getErrors(List<Bounds> bounds, ProgressMonitor monitor) {
-        ProgressMonitor subTask = monitor.createSubTaskMonitor(0, false);
-        subTask.beginTask(tr("Getting {0} errors", NAME));
-        OpenQADataSet<UUID, OsmoseNode> returnDataSet = null;
-        String windowTitle = tr("Updating {0} information", NAME);
-        if (bounds.size() > 10) {
-            subTask.subTask(windowTitle);
-            subTask.setTicksCount(bounds.size());
-            subTask.setTicks(0);
-        } else {
-            subTask.indeterminateSubTask(windowTitle);
-        }
-        for (Bounds bound : bounds) {
-            if (subTask.isCanceled())
-                break;
-            try {
-                OpenQADataSet<UUID, OsmoseNode> ds = getGeoJsonErrors(bound);
-                if (ds != null) {
-                    if (returnDataSet == null) {
-                        returnDataSet = ds;
-                    } else {
-                        returnDataSet.mergeFrom(ds);
-                    }
-                }
-            } catch (IOException e) {
-                Logging.error(e);
-            }
-        }
-        return returnDataSet;
+        final String enabled = buildDownloadErrorList();
+        return getErrors(bounds, monitor, bound -> getGeoJsonErrors(enabled, bound, 0));
     }
 
     @Override
@@ -202,7 +171,7 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
         if (ERROR_MAP.isEmpty()) {
             TreeMap<String, String> tErrors = new TreeMap<>();
 
-            try (InputStream is = OpenQACache.getUrl(MessageFormat.format(BASE_API + "items", getLocale()));
+            try (InputStream is = OpenQACache.getUrl(MessageFormat.format(BASE_API + "items", OsmoseNode.getLocale()));
                     JsonParser parser = Json.createParser(is)) {
                 while (parser.hasNext()) {
                     if (parser.next() == Event.START_OBJECT) {
@@ -215,8 +184,8 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
                                 String name;
                                 if (item.get("title") == JsonValue.NULL) {
                                     name = tr("(name missing)");
-                                } else if (item.getJsonObject("title").containsKey(getLocale())) {
-                                    name = item.getJsonObject("title").getString(getLocale());
+                                } else if (item.getJsonObject("title").containsKey(OsmoseNode.getLocale())) {
+                                    name = item.getJsonObject("title").getString(OsmoseNode.getLocale());
                                 } else {
                                     name = item.getJsonObject("title").getString("auto");
                                 }
@@ -244,7 +213,7 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
     public static NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> getCategories() {
         NavigableMap<String, NavigableMap<String, NavigableMap<String, String>>> categories = new TreeMap<>();
         NavigableMap<String, String> errors = realGetErrors();
-        try (InputStream is = OpenQACache.getUrl(MessageFormat.format(BASE_API + "items", getLocale()));
+        try (InputStream is = OpenQACache.getUrl(MessageFormat.format(BASE_API + "items", OsmoseNode.getLocale()));
                 JsonParser parser = Json.createParser(is)) {
             while (parser.hasNext()) {
                 if (parser.next() == Event.START_OBJECT) {
@@ -255,8 +224,8 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
                         final String name;
                         if (!info.containsKey("title")) {
                             name = tr("No name for this category");
-                        } else if (info.getJsonObject("title").containsKey(getLocale())) {
-                            name = info.getJsonObject("title").getString(getLocale());
+                        } else if (info.getJsonObject("title").containsKey(OsmoseNode.getLocale())) {
+                            name = info.getJsonObject("title").getString(OsmoseNode.getLocale());
                         } else {
                             name = info.getJsonObject("title").getString("auto");
                         }
@@ -304,7 +273,7 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
                         for (Map.Entry<String, JsonValue> entry : info.entrySet()) {
                             String key = entry.getKey();
                             JsonValue value = entry.getValue();
-                            if ("elems".equals(key))
+                            if ("elems".equals(key) || node.setField(key, value))
                                 continue;// TODO actually deal with it in json format...
                             if (value.getValueType() == ValueType.STRING) {
                                 node.put(key, info.getString(key));
@@ -338,16 +307,21 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
     }
 
     @Override
-    public String getNodeToolTip(OsmoseNode node) {
+    public boolean needsAdditionalInformation(OsmoseNode node) {
+        return !"true".equals(node.get(ADDITIONAL_INFORMATION));
+    }
+
+    @Override
+    protected String createNodeToolTip(OsmoseNode node) {
         StringBuilder sb = new StringBuilder("<html>");
-        sb.append(tr(NAME)).append(": ").append(getTranslatedText(node.get("title"))).append(" - <a href=")
+        sb.append(tr(NAME)).append(": ").append(node.getTitle()).append(" - <a href=")
                 .append(getBaseErrorUrl()).append(node.get(ERROR_ID)).append('>').append(node.get(ERROR_ID))
                 .append("</a>");
 
         sb.append("<hr/>");
-        String subtitle = node.get("subtitle");
+        String subtitle = node.getSubtitle();
         if (subtitle != null && !subtitle.trim().isEmpty()) {
-            sb.append(getTranslatedText(subtitle));
+            sb.append(subtitle);
             sb.append("<hr/>");
         }
         String elements = node.get("elems");
@@ -384,9 +358,9 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
             sb.append(htmlText);
             sb.append("<hr/>");
         }
-        final Collection<OsmPrimitive> primitives = node.hasKey("osm_ids")
-                ? getLatestServerPrimitive(parseOsmIds(node.get("osm_ids")))
-                : Collections.emptyList();
+        final Collection<PrimitiveId> osmIds = node.getOsmIds();
+        final Collection<OsmPrimitive> primitives = osmIds.isEmpty() ? Collections.emptyList()
+                : getLatestServerPrimitive(osmIds);
 
         sb.append("Issue last updated on ".concat(node.get("update")));
 
@@ -398,18 +372,9 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
         }
         if (node.hasKey("username")) {
             sb.append("<br/>").append(tr("Last modified by ")).append(getUserName(node.get("username")));
-        } else if (node.hasKey("usernames")) {
-            final List<String> users;
-            try (JsonReader reader = Json
-                    .createReader(new ByteArrayInputStream(node.get("usernames").getBytes(StandardCharsets.UTF_8)))) {
-                JsonArray jsonArray = reader.readArray();
-                users = new ArrayList<>(jsonArray.size());
-                for (JsonString user : jsonArray.getValuesAs(JsonString.class)) {
-                    if (!user.getString().isBlank()) {
-                        users.add(getUserName(user.getString()));
-                    }
-                }
-            }
+        } else if (node.getUsernames() != null) {
+            final List<String> users = node.getUsernames().stream().map(GenericInformation::getUserName)
+                    .collect(Collectors.toList());
             if (users.isEmpty()) {
                 users.addAll(primitives.stream().map(OsmPrimitive::getUser).distinct().filter(User::isOsmUser)
                         .map(User::getName).collect(Collectors.toList()));
@@ -429,70 +394,37 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
      * @return The latest primitives
      */
     private static Collection<OsmPrimitive> getLatestServerPrimitive(final Collection<PrimitiveId> primitiveIds) {
-        final Collection<DataSet> dataSets = MainApplication.getLayerManager().getLayersOfType(OsmDataLayer.class)
-                .stream().filter(layer -> layer.isDownloadable() && layer.isUploadable()).map(OsmDataLayer::getDataSet)
-                .collect(Collectors.toSet());
-        return primitiveIds.stream()
-                .map(primitive -> dataSets.stream().map(dataset -> dataset.getPrimitiveById(primitive))
-                        .filter(Objects::nonNull).filter(p -> !p.isModified())
-                        .max(Comparator.comparing(OsmPrimitive::getVersion)).orElse(null))
-                .filter(Objects::nonNull).collect(Collectors.toList());
+        return primitiveIds.stream().map(OsmPrimitiveIndex::getLatestServerPrimitive).filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
-    /**
-     * Convert a json into OSM ids
-     *
-     * @param json The json to convert
-     * @return The osm ids
-     */
-    private static Collection<PrimitiveId> parseOsmIds(final String json) {
-        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
-            final JsonObject object = reader.readObject();
-            if (object.containsKey("relations")) {
-                final JsonArray relations = object.getJsonArray("relations");
-                return relations.stream().filter(JsonNumber.class::isInstance).map(JsonNumber.class::cast)
-                        .map(JsonNumber::longValue).map(i -> new SimplePrimitiveId(i, OsmPrimitiveType.RELATION))
-                        .collect(Collectors.toList());
-            }
-            if (object.containsKey("ways")) {
-                final JsonArray ways = object.getJsonArray("ways");
-                return ways.stream().filter(JsonNumber.class::isInstance).map(JsonNumber.class::cast)
-                        .map(JsonNumber::longValue).map(i -> new SimplePrimitiveId(i, OsmPrimitiveType.WAY))
-                        .collect(Collectors.toList());
-            }
-            if (object.containsKey("nodes")) {
-                final JsonArray nodes = object.getJsonArray("nodes");
-                return nodes.stream().filter(JsonNumber.class::isInstance).map(JsonNumber.class::cast)
-                        .map(JsonNumber::longValue).map(i -> new SimplePrimitiveId(i, OsmPrimitiveType.NODE))
-                        .collect(Collectors.toList());
-            }
-        }
-        return Collections.emptyList();
+    @Override
+    protected String getActionUrl(OsmoseNode node, IssueAction action) {
+        return getBaseApi() + "issue/" + node.get(ERROR_ID) + "/" + (action == IssueAction.FIXED ? "done" : "false");
     }
 
     @Override
-    public List<JButton> getActions(OsmoseNode node) {
-        final String apiUrl = getBaseApi() + "issue/" + node.get(ERROR_ID) + "/";
+    protected void applyAction(OsmoseNode node, IssueAction action) {
+        node.put("item", action == IssueAction.FIXED ? "fixed" : "falsePositive");
+    }
 
+    @Override
+    public List<JButton> getActions(OsmoseNode node) {
         JButton fixed = new JButton();
         JButton falsePositive = new JButton();
 
         String sTrue = "true";
         String sFalse = "false";
-        String actionTaken = "actionTaken";
+        String actionTaken = ACTION_TAKEN;
 
         fixed.setAction(new AbstractAction() {
             private static final long serialVersionUID = 3020815442282939509L;
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(apiUrl.concat("done")).run();
-                node.put(actionTaken, sTrue);
+                takeAction(Collections.singletonList(node), IssueAction.FIXED);
                 fixed.setEnabled(false);
                 falsePositive.setEnabled(true);
-                node.put("item", "fixed");
-                redrawErrorLayers(tr(LAYER_NAME));
-                addChangeSetTag("osmose", node.get(ERROR_ID));
             }
         });
 
@@ -501,12 +433,9 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
 
             @Override
             public void actionPerformed(ActionEvent e) {
-                new SendInformation(apiUrl.concat(sFalse)).run();
-                node.put(actionTaken, sFalse);
+                takeAction(Collections.singletonList(node), IssueAction.FALSE_POSITIVE);
                 fixed.setEnabled(true);
                 falsePositive.setEnabled(false);
-                node.put("item", "falsePositive");
-                redrawErrorLayers(tr(LAYER_NAME));
             }
         });
 
@@ -574,52 +503,16 @@ public class OsmoseInformation extends GenericInformation<UUID, OsmoseNode, Open
     }
 
     private static String getBaseApiReal() {
-        return MessageFormat.format(BASE_API, getLocale());
+        return MessageFormat.format(BASE_API, OsmoseNode.getLocale());
     }
 
     @Override
     public String getBaseImg() {
-        return MessageFormat.format(BASE_IMG, getLocale());
+        return MessageFormat.format(BASE_IMG, OsmoseNode.getLocale());
     }
 
     @Override
     public String getBaseErrorUrl() {
-        return MessageFormat.format(BASE_ERROR_URL, getLocale());
-    }
-
-    /**
-     * Get the current locale
-     *
-     * @return The locale to use
-     */
-    private static String getLocale() {
-        String[] valid = new String[] { "eu", "pt_BR", "uk", "zh_TW", "hu", "en", "ro", "ru", "de", "nb", "lt", "pl",
-                "cs", "it", "es", "fa", "fi", "zh_CN", "ca", "el", "ja", "nl", "fr", "sv", "gl", "pt" };
-        if (Stream.of(valid).anyMatch(s -> s.equalsIgnoreCase(LanguageInfo.getJOSMLocaleCode()))) {
-            return LanguageInfo.getJOSMLocaleCode();
-        }
-        return "en";
-    }
-
-    /**
-     * Get the translated text, if available
-     *
-     * @param json The json string to parse
-     * @return The translated text
-     */
-    private static String getTranslatedText(final String json) {
-        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
-            final JsonObject object = reader.readObject();
-            final String locale = getLocale();
-            if (object.containsKey(locale)) {
-                return object.getString(locale);
-            }
-            if (object.containsKey("auto")) {
-                return object.getString("auto");
-            }
-        } catch (JsonParsingException exception) {
-            throw new JosmRuntimeException(json, exception);
-        }
-        return json;
+        return MessageFormat.format(BASE_ERROR_URL, OsmoseNode.getLocale());
     }
 }
@@ -0,0 +1,175 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.osmose;
+
+import jakarta.json.Json;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.openstreetmap.josm.data.osm.TagMap;
+import org.openstreetmap.josm.tools.Logging;
+
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * Read the issues from the Osmose {@code issues} API. The issues are read from
+ * the parser events, and each issue is passed on as soon as it has been read,
+ * so that the {@code issues} array is never held in memory as a whole.
+ *
+ * @author Taylor Smock
+ */
+final class OsmoseIssuesReader {
+    private static final String ISSUES = "issues";
+    private static final String LAT = "lat";
+    private static final String LON = "lon";
+    private static final String ID = "id";
+
+    private final JsonParser parser;
+
+    private OsmoseIssuesReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Read the issues from a response
+     *
+     * @param source   The response to read. This is closed once it is read.
+     * @param consumer The consumer for each issue
+     */
+    static void readIssues(InputStream source, Consumer<OsmoseNode> consumer) {
+        try (JsonParser parser = Json.createParser(source)) {
+            new OsmoseIssuesReader(parser).parse(consumer);
+        }
+    }
+
+    private void parse(Consumer<OsmoseNode> consumer) {
+        while (parser.hasNext()) {
+            if (parser.next() == Event.START_OBJECT) {
+                parseRoot(consumer);
+            }
+        }
+    }
+
+    private void parseRoot(Consumer<OsmoseNode> consumer) {
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.END_OBJECT) {
+                return;
+            } else if (event == Event.KEY_NAME) {
+                final boolean isIssues = ISSUES.equals(parser.getString());
+                event = parser.next();
+                if (isIssues && event == Event.START_ARRAY) {
+                    parseIssues(consumer);
+                } else {
+                    skipValue(event);
+                }
+            }
+        }
+    }
+
+    private void parseIssues(Consumer<OsmoseNode> consumer) {
+        while (parser.hasNext()) {
+            final Event event = parser.next();
+            if (event == Event.END_ARRAY) {
+                return;
+            } else if (event == Event.START_OBJECT) {
+                final OsmoseNode node = parseIssue();
+                if (node != null) {
+                    consumer.accept(node);
+                }
+            } else {
+                skipValue(event);
+            }
+        }
+    }
+
+    /**
+     * Parse a single issue. The opening {@link Event#START_OBJECT} must have
+     * been read.
+     *
+     * @return The node for the issue, or {@code null} if it has no id
+     */
+    private OsmoseNode parseIssue() {
+        final TagMap tagMap = new TagMap();
+        final Map<String, JsonValue> fields = new HashMap<>();
+        double lat = Double.MAX_VALUE;
+        double lon = Double.MAX_VALUE;
+        String field = null;
+        while (parser.hasNext()) {
+            final Event event = parser.next();
+            switch (event) {
+            case END_OBJECT:
+                final String id = tagMap.remove(ID);
+                if (id == null) {
+                    Logging.warn("Osmose issue without an id ignored");
+                    return null;
+                }
+                tagMap.put(GenericInformation.ERROR_ID, id);
+                final OsmoseNode node = new OsmoseNode(UUID.fromString(id), lat, lon);
+                node.setKeys(tagMap);
+                fields.forEach(node::setField);
+                return node;
+            case KEY_NAME:
+                field = parser.getString();
+                break;
+            case VALUE_NUMBER:
+                if (LAT.equals(field)) {
+                    lat = getDouble();
+                } else if (LON.equals(field)) {
+                    lon = getDouble();
+                } else {
+                    tagMap.put(field, parser.getString());
+                }
+                break;
+            case VALUE_STRING:
+                if (LAT.equals(field)) {
+                    lat = Double.parseDouble(parser.getString());
+                } else if (LON.equals(field)) {
+                    lon = Double.parseDouble(parser.getString());
+                } else if (OsmoseNode.isField(field)) {
+                    fields.put(field, parser.getValue());
+                } else {
+                    tagMap.put(field, parser.getString());
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                tagMap.put(field, Boolean.toString(event == Event.VALUE_TRUE));
+                break;
+            case START_OBJECT:
+            case START_ARRAY:
+                if (OsmoseNode.isField(field)) {
+                    // Titles, osm ids and usernames are decoded once, so tooltips do not parse JSON
+                    fields.put(field, parser.getValue());
+                } else {
+                    tagMap.put(field, parser.getValue().toString());
+                }
+                break;
+            default:
+                // Don't add null values
+            }
+        }
+        return null;
+    }
+
+    private double getDouble() {
+        if (parser.isIntegralNumber()) {
+            return parser.getLong();
+        }
+        return parser.getBigDecimal().doubleValue();
+    }
+
+    private void skipValue(Event event) {
+        if (event == Event.START_OBJECT) {
+            parser.skipObject();
+        } else if (event == Event.START_ARRAY) {
+            parser.skipArray();
+        }
+    }
+}
@@ -1,16 +1,222 @@
 // License: GPL. For details, see LICENSE file.
 package com.kaart.openqa.profiles.osmose;
 
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveId;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.tools.LanguageInfo;
 
 import com.kaart.openqa.profiles.OpenQANode;
 
 /**
- * The node class for Osmose
+ * The node class for Osmose. The structured values of an issue (translated
+ * titles, OSM ids and usernames) are decoded once, when they are read, instead
+ * of being kept as JSON in the tags.
  */
 public class OsmoseNode extends OpenQANode<UUID> {
+    static final String TITLE = "title";
+    static final String SUBTITLE = "subtitle";
+    static final String OSM_IDS = "osm_ids";
+    static final String USERNAMES = "usernames";
+
+    private static final long[] NO_IDS = new long[0];
+
+    /**
+     * The decoded values. This is never modified, only replaced.
+     */
+    private static final class Details {
+        private String title;
+        private String subtitle;
+        private long[] nodeIds = NO_IDS;
+        private long[] wayIds = NO_IDS;
+        private long[] relationIds = NO_IDS;
+        private List<String> usernames;
+
+        Details copy() {
+            final Details copy = new Details();
+            copy.title = this.title;
+            copy.subtitle = this.subtitle;
+            copy.nodeIds = this.nodeIds;
+            copy.wayIds = this.wayIds;
+            copy.relationIds = this.relationIds;
+            copy.usernames = this.usernames;
+            return copy;
+        }
+    }
+
+    private static final Details NO_DETAILS = new Details();
+
+    private volatile Details details = NO_DETAILS;
 
     protected OsmoseNode(UUID identifier, double lat, double lon) {
         super(identifier, lat, lon);
     }
+
+    /**
+     * Check if a key is decoded into a field instead of being kept as a tag
+     *
+     * @param key The key to check
+     * @return {@code true} if {@link #setField} should be used for the key
+     */
+    static boolean isField(String key) {
+        return TITLE.equals(key) || SUBTITLE.equals(key) || OSM_IDS.equals(key) || USERNAMES.equals(key);
+    }
+
+    /**
+     * Decode a structured value
+     *
+     * @param key   The key of the value
+     * @param value The value
+     * @return {@code true} if the value was decoded, {@code false} if the key is
+     *         not for a field
+     */
+    synchronized boolean setField(String key, JsonValue value) {
+        if (!isField(key)) {
+            return false;
+        }
+        final Details newDetails = this.details.copy();
+        if (TITLE.equals(key)) {
+            newDetails.title = getTranslatedText(value);
+        } else if (SUBTITLE.equals(key)) {
+            newDetails.subtitle = getTranslatedText(value);
+        } else if (OSM_IDS.equals(key)) {
+            final JsonObject ids = value instanceof JsonObject ? (JsonObject) value : JsonValue.EMPTY_JSON_OBJECT;
+            newDetails.nodeIds = getIds(ids, "nodes");
+            newDetails.wayIds = getIds(ids, "ways");
+            newDetails.relationIds = getIds(ids, "relations");
+        } else {
+            newDetails.usernames = getStrings(value);
+        }
+        this.details = newDetails;
+        updateModificationStamp();
+        return true;
+    }
+
+    @Override
+    public synchronized void mergeFrom(OpenQANode<UUID> other) {
+        super.mergeFrom(other);
+        if (other instanceof OsmoseNode) {
+            this.details = ((OsmoseNode) other).details;
+            updateModificationStamp();
+        }
+    }
+
+    /**
+     * Get the title of the issue, in the language of the user if available
+     *
+     * @return The title, or {@code null}
+     */
+    public String getTitle() {
+        return this.details.title;
+    }
+
+    /**
+     * Get the subtitle of the issue, in the language of the user if available
+     *
+     * @return The subtitle, or {@code null}
+     */
+    public String getSubtitle() {
+        return this.details.subtitle;
+    }
+
+    /**
+     * Get the OSM objects of the issue
+     *
+     * @return The ids of the objects
+     */
+    public Collection<PrimitiveId> getOsmIds() {
+        final Details current = this.details;
+        final List<PrimitiveId> ids = new ArrayList<>(
+                current.nodeIds.length + current.wayIds.length + current.relationIds.length);
+        addIds(ids, current.relationIds, OsmPrimitiveType.RELATION);
+        addIds(ids, current.wayIds, OsmPrimitiveType.WAY);
+        addIds(ids, current.nodeIds, OsmPrimitiveType.NODE);
+        return ids;
+    }
+
+    /**
+     * Get the users who last modified the OSM objects of the issue
+     *
+     * @return The usernames, or {@code null} if they are not known
+     */
+    public List<String> getUsernames() {
+        return this.details.usernames;
+    }
+
+    private static void addIds(List<PrimitiveId> ids, long[] values, OsmPrimitiveType type) {
+        for (long id : values) {
+            ids.add(new SimplePrimitiveId(id, type));
+        }
+    }
+
+    private static long[] getIds(JsonObject ids, String type) {
+        final JsonValue value = ids.get(type);
+        if (!(value instanceof JsonArray)) {
+            return NO_IDS;
+        }
+        return ((JsonArray) value).stream().filter(JsonNumber.class::isInstance).map(JsonNumber.class::cast)
+                .mapToLong(JsonNumber::longValue).toArray();
+    }
+
+    private static List<String> getStrings(JsonValue value) {
+        if (!(value instanceof JsonArray)) {
+            return Collections.emptyList();
+        }
+        final List<String> strings = new ArrayList<>();
+        for (JsonValue string : (JsonArray) value) {
+            if (string instanceof JsonString && !((JsonString) string).getString().isBlank()) {
+                strings.add(((JsonString) string).getString());
+            }
+        }
+        return Collections.unmodifiableList(strings);
+    }
+
+    /**
+     * Get the Osmose locale for the current JOSM locale
+     *
+     * @return The locale to use
+     */
+    static String getLocale() {
+        String[] valid = new String[] { "eu", "pt_BR", "uk", "zh_TW", "hu", "en", "ro", "ru", "de", "nb", "lt", "pl",
+                "cs", "it", "es", "fa", "fi", "zh_CN", "ca", "el", "ja", "nl", "fr", "sv", "gl", "pt" };
+        if (Stream.of(valid).anyMatch(s -> s.equalsIgnoreCase(LanguageInfo.getJOSMLocaleCode()))) {
+            return LanguageInfo.getJOSMLocaleCode();
+        }
+        return "en";
+    }
+
+    /**
+     * Get the translated text, if available
+     *
+     * @param value The translations, or a plain string
+     * @return The translated text
+     */
+    private static String getTranslatedText(JsonValue value) {
+        if (value instanceof JsonString) {
+            return ((JsonString) value).getString();
+        } else if (value instanceof JsonObject) {
+            final JsonObject translations = (JsonObject) value;
+            final String locale = getLocale();
+            if (translations.get(locale) instanceof JsonString) {
+                return translations.getString(locale);
+            }
+            if (translations.get("auto") instanceof JsonString) {
+                return translations.getString("auto");
+            }
+        }
+        return JsonValue.NULL.equals(value) ? null : value.toString();
+    }
 }
@@ -0,0 +1,117 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * Test class for {@link ClusterIndex}
+ */
+class ClusterIndexTest {
+    private static final Bounds WORLD = new Bounds(-85, -180, 85, 180);
+
+    private static OpenQANode<Long> createNode(long id, double lat, double lon, String error) {
+        final OpenQANode<Long> node = new OpenQANode<Long>(id, lat, lon) {
+        };
+        node.put("error", error);
+        return node;
+    }
+
+    private static OpenQADataSet<Long, OpenQANode<Long>> createDataSet(ClusterIndex<OpenQANode<Long>> clusters) {
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = new OpenQADataSet<>();
+        dataSet.addPrimitive(createNode(1, 39.0, -108.0, "a"));
+        dataSet.addPrimitive(createNode(2, 39.0001, -108.0001, "b"));
+        dataSet.addPrimitive(createNode(3, 39.0002, -108.0002, "b"));
+        dataSet.addNodeListener(clusters);
+        return dataSet;
+    }
+
+    /**
+     * Existing nodes should be clustered, with the most common error
+     */
+    @Test
+    void testExistingNodes() {
+        final ClusterIndex<OpenQANode<Long>> clusters = new ClusterIndex<>(node -> node.get("error"));
+        createDataSet(clusters);
+        final Collection<ClusterIndex.Cluster> level0 = clusters.getClusters(0, WORLD);
+        assertEquals(1, level0.size());
+        final ClusterIndex.Cluster cluster = level0.iterator().next();
+        assertEquals(3, cluster.getCount());
+        assertEquals("b", cluster.getErrorClass());
+        assertEquals(39.0001, cluster.getLat(), 1e-9);
+        assertTrue(cluster.getBounds().contains(createNode(4, 39, -108, "a")));
+        assertEquals(3, clusters.getClusters(ClusterIndex.MAX_LEVEL, WORLD).stream()
+                .mapToInt(ClusterIndex.Cluster::getCount).sum());
+    }
+
+    /**
+     * Merging and removing nodes should update the clusters
+     */
+    @Test
+    void testIncrementalUpdates() {
+        final ClusterIndex<OpenQANode<Long>> clusters = new ClusterIndex<>(node -> node.get("error"));
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = createDataSet(clusters);
+        final OpenQADataSet<Long, OpenQANode<Long>> other = new OpenQADataSet<>();
+        other.addPrimitive(createNode(1, 39.0, -108.0, "c"));
+        other.addPrimitive(createNode(5, -33.9, 18.4, "c"));
+        dataSet.mergeFrom(other);
+        assertEquals(2, clusters.getClusters(1, WORLD).size());
+        assertEquals(4, clusters.getClusters(0, WORLD).iterator().next().getCount());
+
+        dataSet.removePrimitive(createNode(5, -33.9, 18.4, "c"));
+        dataSet.removePrimitive(createNode(2, 39.0001, -108.0001, "b"));
+        final ClusterIndex.Cluster cluster = clusters.getClusters(0, WORLD).iterator().next();
+        assertEquals(2, cluster.getCount());
+        assertEquals(1, clusters.getClusters(1, WORLD).size());
+
+        dataSet.clear();
+        assertTrue(clusters.getClusters(0, WORLD).isEmpty());
+    }
+
+    /**
+     * Changing the error of a node should move it to the new error, and removing
+     * it should remove it from the error it was counted for
+     */
+    @Test
+    void testChangedNodes() {
+        final ClusterIndex<OpenQANode<Long>> clusters = new ClusterIndex<>(node -> node.get("error"));
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = new OpenQADataSet<>();
+        final OpenQANode<Long> first = createNode(1, 39.0, -108.0, "a");
+        final OpenQANode<Long> second = createNode(2, 39.0001, -108.0001, "b");
+        dataSet.addPrimitive(first);
+        dataSet.addPrimitive(second);
+        dataSet.addPrimitive(createNode(3, 39.0002, -108.0002, "b"));
+        dataSet.addNodeListener(clusters);
+        second.put("error", "a");
+        dataSet.nodesChanged(Collections.singleton(second));
+        assertEquals("a", clusters.getClusters(0, WORLD).iterator().next().getErrorClass());
+
+        // Changes without an event should not leave stale counts when the node is removed
+        first.put("error", "c");
+        dataSet.removePrimitive(first);
+        dataSet.removePrimitive(second);
+        final ClusterIndex.Cluster cluster = clusters.getClusters(0, WORLD).iterator().next();
+        assertEquals(1, cluster.getCount());
+        assertEquals("b", cluster.getErrorClass());
+        dataSet.removePrimitive(createNode(3, 39.0002, -108.0002, "b"));
+        assertTrue(clusters.getClusters(0, WORLD).isEmpty());
+    }
+
+    /**
+     * The grid level should match slippy map zoom levels
+     */
+    @Test
+    void testGetLevel() {
+        assertEquals(0, ClusterIndex.getLevel(360.0 / 256, 256));
+        assertEquals(10, ClusterIndex.getLevel(360.0 / 256 / 1024, 256));
+        assertEquals(ClusterIndex.MAX_LEVEL, ClusterIndex.getLevel(1e-12, 64));
+    }
+}
@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.swing.SwingUtilities;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link Coalescer}
+ */
+class CoalescerTest {
+    private static final int DELAY = 20;
+
+    /**
+     * Wait for the timer of a coalescer, and the events it queued on the EDT
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    private static void awaitTimer() throws InterruptedException, InvocationTargetException {
+        Thread.sleep(DELAY * 10L);
+        SwingUtilities.invokeAndWait(() -> {
+            // Nothing to do, the events before this one have been handled
+        });
+    }
+
+    /**
+     * A burst of events should be handled once, with the last event
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    @Test
+    void testBurstHandledOnce() throws InterruptedException, InvocationTargetException {
+        final List<Integer> handled = new CopyOnWriteArrayList<>();
+        final Coalescer<Integer> coalescer = new Coalescer<>(DELAY, handled::add);
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < 100; i++) {
+                coalescer.post(i);
+            }
+        });
+        awaitTimer();
+        assertEquals(Collections.singletonList(99), handled);
+        assertEquals(99, coalescer.getLatest());
+
+        SwingUtilities.invokeAndWait(() -> coalescer.post(100));
+        awaitTimer();
+        assertEquals(Arrays.asList(99, 100), handled);
+    }
+
+    /**
+     * Events should not be handled after the coalescer is stopped
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    @Test
+    void testStop() throws InterruptedException, InvocationTargetException {
+        final List<Integer> handled = new CopyOnWriteArrayList<>();
+        final Coalescer<Integer> coalescer = new Coalescer<>(DELAY, handled::add);
+        SwingUtilities.invokeAndWait(() -> {
+            coalescer.post(1);
+            coalescer.stop();
+        });
+        awaitTimer();
+        assertEquals(Collections.emptyList(), handled);
+    }
+}
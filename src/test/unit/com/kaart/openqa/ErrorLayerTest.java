@@ -0,0 +1,100 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.BBox;
+
+import com.kaart.openqa.profiles.GenericInformation;
+import com.kaart.openqa.profiles.GenericInformation.IssueAction;
+import com.kaart.openqa.profiles.OpenQANode;
+import com.kaart.openqa.profiles.TestInformation;
+
+/**
+ * Test class for {@link ErrorLayer}
+ */
+class ErrorLayerTest {
+    private static final BBox VIEW = new BBox(-108.01, 39.0, -108.0, 39.01);
+
+    /** The map view for the tests, with 1 pixel for 0.0001 degrees and the top left at 39.01, -108.01 */
+    private static Point toPoint(OpenQANode<?> node) {
+        return new Point((int) Math.round((node.lon() + 108.01) * 10_000),
+                (int) Math.round((39.01 - node.lat()) * 10_000));
+    }
+
+    private static BBox toArea(Rectangle rectangle) {
+        return new BBox(rectangle.getMinX() / 10_000 - 108.01, 39.01 - rectangle.getMaxY() / 10_000,
+                rectangle.getMaxX() / 10_000 - 108.01, 39.01 - rectangle.getMinY() / 10_000);
+    }
+
+    private static List<Long> getIds(List<OpenQANode<Long>> nodes) {
+        return nodes.stream().map(OpenQANode::getIdentifier).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * Bulk actions should only apply to the issues in view that the action was not
+     * taken for, and only to the selected error types if there are any
+     */
+    @Test
+    void testBulkActionNodes() {
+        final TestInformation information = new TestInformation();
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = information.createNewDataSet();
+        dataSet.addPrimitive(TestInformation.createNode(1, 39.005, -108.005, "a"));
+        dataSet.addPrimitive(TestInformation.createNode(2, 39.005, -108.005, "b"));
+        dataSet.addPrimitive(TestInformation.createNode(3, 39.5, -108.005, "a"));
+        final OpenQANode<Long> marked = TestInformation.createNode(4, 39.005, -108.005, "a");
+        marked.put(GenericInformation.ACTION_TAKEN, "false");
+        dataSet.addPrimitive(marked);
+
+        assertEquals(Arrays.asList(1L, 2L), getIds(ErrorLayer.getBulkActionNodes(information, dataSet, VIEW,
+                IssueAction.FALSE_POSITIVE, Collections.emptySet())));
+        assertEquals(Arrays.asList(1L, 2L, 4L), getIds(ErrorLayer.getBulkActionNodes(information, dataSet, VIEW,
+                IssueAction.FIXED, Collections.emptySet())));
+        final String errorKey = ErrorLayer.getErrorKey(information, marked);
+        assertEquals("Test:a", errorKey);
+        assertEquals(Collections.singletonList(1L), getIds(ErrorLayer.getBulkActionNodes(information, dataSet, VIEW,
+                IssueAction.FALSE_POSITIVE, Collections.singleton(errorKey))));
+        // The same error type from another source is a different error type
+        assertEquals(Collections.emptyList(), getIds(ErrorLayer.getBulkActionNodes(information, dataSet, VIEW,
+                IssueAction.FALSE_POSITIVE, Collections.singleton("Other:a"))));
+    }
+
+    /**
+     * Clicks and hovers should only look at the issues near the mouse, and the
+     * nearest issue should come first
+     */
+    @Test
+    void testNodesNear() {
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = new OpenQADataSet<>();
+        // The first node is further away than the second
+        dataSet.addPrimitive(TestInformation.createNode(1, 39.005, -108.0055, "a"));
+        dataSet.addPrimitive(TestInformation.createNode(2, 39.005, -108.0048, "a"));
+        dataSet.addPrimitive(TestInformation.createNode(3, 39.005, -108.005, "a"));
+        // Too far away from the mouse
+        dataSet.addPrimitive(TestInformation.createNode(4, 39.005, -108.003, "a"));
+        dataSet.addPrimitive(TestInformation.createNode(5, 39.0065, -108.0048, "a"));
+
+        final Point mouse = new Point(52, 50);
+        final List<Rectangle> searched = new ArrayList<>();
+        final List<OpenQANode<Long>> near = ErrorLayer.getNodesNear(dataSet, mouse, 10, 10, rectangle -> {
+            searched.add(rectangle);
+            return toArea(rectangle);
+        }, ErrorLayerTest::toPoint);
+        assertEquals(Arrays.asList(2L, 3L, 1L), near.stream().map(OpenQANode::getIdentifier)
+                .collect(Collectors.toList()));
+        assertEquals(Collections.singletonList(new Rectangle(42, 40, 20, 20)), searched);
+
+        // Nodes that the search finds, but that are too far away horizontally or vertically, are left out
+        assertEquals(Collections.singletonList(2L), getIds(ErrorLayer.getNodesNear(dataSet, mouse, 1, 10,
+                rectangle -> toArea(new Rectangle(0, 0, 200, 200)), ErrorLayerTest::toPoint)));
+    }
+}
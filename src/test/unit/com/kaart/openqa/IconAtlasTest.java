@@ -0,0 +1,147 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import javax.swing.ImageIcon;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.tools.ImageProvider.ImageSizes;
+
+import com.kaart.openqa.profiles.TestInformation;
+
+/**
+ * Test class for {@link IconAtlas}
+ */
+@BasicPreferences
+class IconAtlasTest {
+    /**
+     * An error source whose icons are loaded from memory, and whose first
+     * {@code failures} loads fail
+     */
+    private static final class IconInformation extends TestInformation {
+        private final AtomicInteger loads = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        @Override
+        public ImageIcon getIcon(String string, ImageSizes size) {
+            this.loads.incrementAndGet();
+            if (this.failures.getAndDecrement() > 0) {
+                this.failed.incrementAndGet();
+                throw new IllegalStateException("Icon " + string + " is not available");
+            }
+            return new ImageIcon(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB));
+        }
+    }
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @BeforeEach
+    void setUp() {
+        this.image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        this.graphics = this.image.createGraphics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.graphics.dispose();
+    }
+
+    /**
+     * Get a sprite, waiting for its icon to be loaded
+     *
+     * @param page   The page to get the sprite from
+     * @param g      The graphics the sprite will be drawn on
+     * @param source The source of the error
+     * @param error  The error value
+     * @return The sprite, or {@code null} if the icon could not be loaded
+     * @throws InterruptedException if the test was interrupted
+     */
+    private static IconAtlas.Sprite await(IconAtlas.Page page, Graphics2D g, IconInformation source, String error)
+            throws InterruptedException {
+        final int failed = source.failed.get();
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < end) {
+            final boolean failedBefore = source.failed.get() > failed;
+            final IconAtlas.Sprite sprite = page.get(g, source, error);
+            if (sprite != null || failedBefore) {
+                return sprite;
+            }
+            Thread.sleep(10);
+        }
+        return null;
+    }
+
+    /**
+     * Pages should be kept for each icon size and display scale
+     */
+    @Test
+    void testPageKeys() {
+        final IconAtlas atlas = new IconAtlas();
+        final IconAtlas.Page small = atlas.getPage(this.graphics, ImageSizes.SMALLICON);
+        assertSame(small, atlas.getPage(this.graphics, ImageSizes.SMALLICON));
+        assertNotSame(small, atlas.getPage(this.graphics, ImageSizes.LARGEICON));
+
+        final Graphics2D scaled = this.image.createGraphics();
+        try {
+            scaled.scale(2, 2);
+            final IconAtlas.Page hiDpi = atlas.getPage(scaled, ImageSizes.SMALLICON);
+            assertNotSame(small, hiDpi);
+            assertSame(hiDpi, atlas.getPage(scaled, ImageSizes.SMALLICON));
+        } finally {
+            scaled.dispose();
+        }
+
+        atlas.clear();
+        assertNotSame(small, atlas.getPage(this.graphics, ImageSizes.SMALLICON));
+    }
+
+    /**
+     * Sprites should be kept for each source and error, and only loaded once
+     *
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test
+    void testSpriteKeys() throws InterruptedException {
+        final IconAtlas.Page page = new IconAtlas().getPage(this.graphics, ImageSizes.SMALLICON);
+        final IconInformation first = new IconInformation();
+        final IconInformation second = new IconInformation();
+        final IconAtlas.Sprite sprite = await(page, this.graphics, first, "a");
+        assertNotNull(sprite);
+        assertSame(sprite, page.get(this.graphics, first, "a"));
+        assertNotSame(sprite, await(page, this.graphics, first, "b"));
+        assertNotSame(sprite, await(page, this.graphics, second, "a"));
+        assertEquals(2, first.loads.get());
+        assertEquals(1, second.loads.get());
+    }
+
+    /**
+     * Icons that could not be loaded should be loaded again later
+     *
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test
+    void testFailedIconRetried() throws InterruptedException {
+        final IconAtlas.Page page = new IconAtlas().getPage(this.graphics, ImageSizes.SMALLICON);
+        final IconInformation source = new IconInformation();
+        source.failures.set(1);
+        assertNull(await(page, this.graphics, source, "a"));
+        assertEquals(1, source.loads.get());
+        assertNotNull(await(page, this.graphics, source, "a"));
+        assertEquals(2, source.loads.get());
+    }
+}
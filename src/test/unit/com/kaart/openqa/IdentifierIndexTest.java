@@ -0,0 +1,80 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.kaart.openqa.profiles.OpenQANode;
+
+/**
+ * Test class for {@link IdentifierIndex} implementations
+ */
+class IdentifierIndexTest {
+    private static <I> void checkAgainstHashMap(IdentifierIndex<I, OpenQANode<I>> index, Function<Random, I> ids) {
+        final Random random = new Random(42);
+        final Map<I, OpenQANode<I>> expected = new HashMap<>();
+        // Use a small id space, so that there are plenty of replacements and removals
+        final Object[] idSpace = new Object[2000];
+        for (int i = 0; i < idSpace.length; i++) {
+            idSpace[i] = ids.apply(random);
+        }
+        for (int i = 0; i < 50_000; i++) {
+            @SuppressWarnings("unchecked")
+            final I id = (I) idSpace[random.nextInt(idSpace.length)];
+            if (random.nextInt(3) == 0) {
+                assertSame(expected.remove(id), index.remove(id));
+            } else {
+                final OpenQANode<I> node = new OpenQANode<I>(id, 0, 0) {
+                };
+                assertSame(expected.put(id, node), index.put(node));
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (Object id : idSpace) {
+            assertSame(expected.get(id), index.get(id));
+            assertEquals(expected.containsKey(id), index.containsKey(id));
+        }
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get(idSpace[0]));
+    }
+
+    /**
+     * The long index should behave like a map
+     */
+    @Test
+    void testLongIdentifierIndex() {
+        checkAgainstHashMap(new LongIdentifierIndex<>(), random -> random.nextLong() >> random.nextInt(64));
+    }
+
+    /**
+     * The UUID index should behave like a map
+     */
+    @Test
+    void testUuidIdentifierIndex() {
+        checkAgainstHashMap(new UuidIdentifierIndex<>(), random -> new UUID(random.nextLong(), random.nextLong()));
+    }
+
+    /**
+     * Identifiers of another type are never found
+     */
+    @Test
+    void testOtherIdentifierType() {
+        final LongIdentifierIndex<OpenQANode<Long>> index = new LongIdentifierIndex<>();
+        index.put(new OpenQANode<Long>(1L, 0, 0) {
+        });
+        assertFalse(index.containsKey(1));
+        assertFalse(index.containsKey("1"));
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,149 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Test class for {@link OpenQACacheEntry}
+ */
+class OpenQACacheEntryTest {
+    /**
+     * Create a GeoJSON document that looks like a KeepRight response
+     *
+     * @param features The number of features
+     * @return The document
+     */
+    private static byte[] createGeoJson(int features) {
+        final StringBuilder builder = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+        for (int i = 0; i < features; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(String.format(Locale.ROOT,
+                    "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[%f,%f]},"
+                            + "\"properties\":{\"error_id\":\"%d\",\"error_type\":\"%d\",\"object_type\":\"way\","
+                            + "\"object_id\":\"%d\",\"title\":\"missing tags\",\"description\":\"this way has no tags\"}}",
+                    -108 + i * 1e-4, 39 + i * 1e-4, i, 30 + i % 20, 1000000 + i));
+        }
+        return builder.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Data should be returned unchanged with every codec
+     *
+     * @throws IOException if the data could not be read
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        final byte[] data = createGeoJson(100);
+        for (OpenQACacheEntry.Codec codec : OpenQACacheEntry.Codec.values()) {
+            final OpenQACacheEntry entry = OpenQACacheEntry.create(data, codec, 6, "\"etag\"", null, Instant.now());
+            try (InputStream is = entry.openStream()) {
+                assertArrayEquals(data, is.readAllBytes(), codec.name());
+            }
+            assertEquals(data.length, entry.getSize());
+            if (codec != OpenQACacheEntry.Codec.NONE) {
+                assertTrue(entry.getStoredSize() < data.length, codec.name());
+            }
+            assertTrue(entry.hasSameData(entry.revalidated(Instant.now())));
+        }
+    }
+
+    /**
+     * Entries read back from the disk cache should still have the same data
+     *
+     * @throws IOException if the entry could not be serialized
+     * @throws ClassNotFoundException if the entry could not be deserialized
+     */
+    @Test
+    void testSameDataAfterSerialization() throws IOException, ClassNotFoundException {
+        final OpenQACacheEntry entry = OpenQACacheEntry.create(createGeoJson(10), OpenQACacheEntry.Codec.GZIP, 6,
+                "\"etag\"", null, Instant.now());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(entry);
+        }
+        final OpenQACacheEntry read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (OpenQACacheEntry) in.readObject();
+        }
+        assertTrue(read.revalidated(Instant.now()).hasSameData(entry));
+        assertFalse(entry.hasSameData(OpenQACacheEntry.create(createGeoJson(11), OpenQACacheEntry.Codec.GZIP, 6,
+                "\"etag\"", null, Instant.now())));
+    }
+
+    /**
+     * Unknown codec names should fall back to gzip
+     */
+    @Test
+    void testCodecFromName() {
+        assertEquals(OpenQACacheEntry.Codec.DEFLATE, OpenQACacheEntry.Codec.fromName("deflate"));
+        assertEquals(OpenQACacheEntry.Codec.NONE, OpenQACacheEntry.Codec.fromName("None"));
+        assertEquals(OpenQACacheEntry.Codec.GZIP, OpenQACacheEntry.Codec.fromName("brotli"));
+    }
+
+    /**
+     * Compare the parse throughput of cached data with and without compression.
+     * Run with {@code -Dopenqa.benchmark=true}.
+     *
+     * @throws IOException if the data could not be read
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "openqa.benchmark", matches = "true")
+    void benchmarkParseThroughput() throws IOException {
+        final byte[] data = createGeoJson(20_000);
+        for (OpenQACacheEntry.Codec codec : OpenQACacheEntry.Codec.values()) {
+            for (int level : new int[] { 1, 6, 9 }) {
+                final OpenQACacheEntry entry = OpenQACacheEntry.create(data, codec, level, null, null,
+                        Instant.now());
+                // Warm up
+                for (int i = 0; i < 5; i++) {
+                    parse(entry);
+                }
+                final int runs = 20;
+                final long start = System.nanoTime();
+                long events = 0;
+                for (int i = 0; i < runs; i++) {
+                    events += parse(entry);
+                }
+                final double seconds = (System.nanoTime() - start) / 1e9;
+                Logging.info(String.format(Locale.ROOT, "%-7s level %d: %8d bytes stored, %7.1f MB/s parsed", codec,
+                        level, entry.getStoredSize(), runs * (double) data.length / 1e6 / seconds));
+                assertTrue(events > 0);
+                if (codec == OpenQACacheEntry.Codec.NONE) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static long parse(OpenQACacheEntry entry) throws IOException {
+        long events = 0;
+        try (InputStream is = entry.openStream(); JsonParser parser = Json.createParser(is)) {
+            while (parser.hasNext()) {
+                parser.next();
+                events++;
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,219 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.kaart.openqa.annotations.OpenQACacheAnnotation;
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Test class for {@link OpenQACache}
+ */
+@BasicPreferences
+@OpenQACacheAnnotation
+class OpenQACacheTest {
+    private static String read(String url, Duration timeToKeep) throws IOException {
+        try (InputStream is = OpenQACache.getUrl(url, timeToKeep)) {
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "Timed out");
+    }
+
+    /**
+     * Read a URL from several threads at the same time, while the server holds
+     * its response until all the threads are waiting
+     *
+     * @param server The server
+     * @param url    The URL to read
+     * @param count  The number of threads
+     * @return The results of the threads
+     * @throws InterruptedException if the test was interrupted
+     */
+    private static List<Future<String>> readConcurrently(TestServer server, String url, int count)
+            throws InterruptedException {
+        final CountDownLatch gate = new CountDownLatch(1);
+        server.setGate(gate);
+        final long coalesced = OpenQACache.getCoalescedCount();
+        final ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            final List<Future<String>> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(executor.submit(() -> read(url, Duration.ofDays(1))));
+            }
+            await(() -> OpenQACache.getCoalescedCount() - coalesced == count - 1);
+            gate.countDown();
+            return results;
+        } finally {
+            server.setGate(null);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Concurrent reads of a URL should share a single download
+     *
+     * @throws IOException if the test server could not be started
+     * @throws ExecutionException if a read failed
+     * @throws InterruptedException if the test was interrupted
+     * @throws TimeoutException if a read did not finish
+     */
+    @Test
+    void testSingleFlight() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        try (TestServer server = new TestServer()) {
+            server.setResponse(200, "a");
+            final long downloads = OpenQACache.getDownloadCount();
+            final long coalesced = OpenQACache.getCoalescedCount();
+            for (Future<String> result : readConcurrently(server, server.getUrl("/single"), 8)) {
+                assertEquals("a", result.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, OpenQACache.getDownloadCount() - downloads);
+            assertEquals(7, OpenQACache.getCoalescedCount() - coalesced);
+            assertEquals(1, server.getRequests().size());
+        }
+    }
+
+    /**
+     * A failed download should fail for all the waiting reads, and should not be
+     * cached
+     *
+     * @throws IOException if the test server could not be started
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test
+    void testSingleFlightFailure() throws IOException, InterruptedException {
+        try (TestServer server = new TestServer()) {
+            final String url = server.getUrl("/failure");
+            server.setResponse(500, "error");
+            final long downloads = OpenQACache.getDownloadCount();
+            for (Future<String> result : readConcurrently(server, url, 4)) {
+                final ExecutionException exception = assertThrows(ExecutionException.class,
+                        () -> result.get(10, TimeUnit.SECONDS));
+                assertTrue(exception.getCause() instanceof IOException);
+            }
+            assertEquals(1, OpenQACache.getDownloadCount() - downloads);
+
+            server.setResponse(200, "a");
+            assertEquals("a", read(url, Duration.ofDays(1)));
+            assertEquals(2, OpenQACache.getDownloadCount() - downloads);
+        }
+    }
+
+    /**
+     * Expired data should be returned at once and refreshed in the background,
+     * and the listeners should only be told about the refresh if the data changed
+     *
+     * @throws IOException if the data could not be read
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test
+    void testStaleWhileRevalidate() throws IOException, InterruptedException {
+        final List<String> refreshed = new CopyOnWriteArrayList<>();
+        final OpenQACache.RefreshListener listener = refreshed::add;
+        OpenQACache.addRefreshListener(listener);
+        try (TestServer server = new TestServer()) {
+            final String url = server.getUrl("/stale");
+            server.setResponse(200, "a");
+            server.setETag("\"a\"");
+            assertEquals("a", read(url, Duration.ofDays(1)));
+
+            server.setResponse(200, "b");
+            server.setETag("\"b\"");
+            assertEquals("a", read(url, Duration.ZERO));
+            await(() -> !refreshed.isEmpty());
+            assertEquals(2, server.getRequests().size());
+            assertEquals(List.of(url), refreshed);
+            assertEquals("b", read(url, Duration.ofDays(1)));
+
+            // The server says that the data did not change, so the listeners are not told
+            assertEquals("b", read(url, Duration.ZERO));
+            await(() -> !OpenQACache.isStale(url));
+            assertEquals(3, server.getRequests().size());
+            assertEquals(List.of(url), refreshed);
+        } finally {
+            OpenQACache.removeRefreshListener(listener);
+        }
+    }
+
+    /**
+     * Expired data should be revalidated with the validators of the cached data,
+     * and kept if the server says that it was not modified
+     *
+     * @throws IOException if the data could not be read
+     * @throws InterruptedException if the test was interrupted
+     */
+    @Test
+    void testNotModified() throws IOException, InterruptedException {
+        Config.getPref().putBoolean(OpenQACache.PREF_STALE_WHILE_REVALIDATE, false);
+        try (TestServer server = new TestServer()) {
+            final String url = server.getUrl("/not-modified");
+            final String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+            server.setResponse(200, "a");
+            server.setETag("\"a\"");
+            server.setLastModified(lastModified);
+            assertEquals("a", read(url, Duration.ofDays(1)));
+
+            // The ETag is unchanged, so the server answers with a 304 and the body is not sent
+            server.setResponse(200, "b");
+            final long notModified = OpenQACache.getNotModifiedCount();
+            Thread.sleep(1000);
+            assertEquals("a", read(url, Duration.ofMillis(1000)));
+            assertEquals(1, OpenQACache.getNotModifiedCount() - notModified);
+            final Headers headers = server.getRequests().get(1);
+            assertEquals("\"a\"", headers.getFirst("If-None-Match"));
+            assertEquals(lastModified, headers.getFirst("If-Modified-Since"));
+
+            // The revalidated data is fresh again
+            assertEquals("a", read(url, Duration.ofMillis(1000)));
+            assertEquals(2, server.getRequests().size());
+        }
+    }
+
+    /**
+     * A server error while revalidating should not remove the cached data
+     *
+     * @throws IOException if the data could not be read
+     */
+    @Test
+    void testServerErrorKeepsStale() throws IOException {
+        Config.getPref().putBoolean(OpenQACache.PREF_STALE_WHILE_REVALIDATE, false);
+        try (TestServer server = new TestServer()) {
+            final String url = server.getUrl("/server-error");
+            server.setResponse(200, "a");
+            assertEquals("a", read(url, Duration.ofDays(1)));
+
+            server.setResponse(503, "unavailable");
+            assertThrows(IOException.class, () -> read(url, Duration.ZERO));
+            assertEquals("a", read(url, Duration.ofDays(1)));
+            assertEquals(2, server.getRequests().size());
+        }
+    }
+}
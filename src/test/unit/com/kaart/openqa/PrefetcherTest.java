@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.swing.SwingUtilities;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Test class for {@link Prefetcher}
+ */
+@BasicPreferences
+class PrefetcherTest {
+    /**
+     * The fetches started by a prefetcher. This is only used on the EDT.
+     */
+    private static final class Fetches {
+        private final List<Integer> started = new ArrayList<>();
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        private int inFlight;
+        private int maxInFlight;
+
+        /**
+         * Create candidates with the given distances. The id of a candidate is its
+         * index.
+         *
+         * @param distances The distances of the candidates
+         * @return The candidates
+         */
+        List<Prefetcher.Candidate> candidates(Double... distances) {
+            final List<Prefetcher.Candidate> candidates = new ArrayList<>();
+            for (int i = 0; i < distances.length; i++) {
+                final int id = i;
+                candidates.add(new Prefetcher.Candidate(distances[i], () -> {
+                    this.started.add(id);
+                    this.inFlight++;
+                    this.maxInFlight = Math.max(this.maxInFlight, this.inFlight);
+                    final CompletableFuture<Boolean> future = new CompletableFuture<>();
+                    this.futures.add(future);
+                    return future;
+                }));
+            }
+            return candidates;
+        }
+
+        /**
+         * Finish the oldest fetch that is still running
+         */
+        void completeNext() {
+            final CompletableFuture<Boolean> future = this.futures.stream().filter(f -> !f.isDone()).findFirst()
+                    .orElseThrow(IllegalStateException::new);
+            this.inFlight--;
+            future.complete(true);
+        }
+    }
+
+    private static void onEdt(Runnable runnable) throws InterruptedException, InvocationTargetException {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+
+    /**
+     * Only the nearest issues within the budget should be fetched, nearest first
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    @Test
+    void testBudgetAndOrder() throws InterruptedException, InvocationTargetException {
+        Config.getPref().putInt(Prefetcher.PREF_PREFETCH_BUDGET, 3);
+        Config.getPref().putInt(Prefetcher.PREF_PREFETCH_CONCURRENCY, 1);
+        final Fetches fetches = new Fetches();
+        final Prefetcher prefetcher = new Prefetcher(() -> fetches.candidates(5.0, 1.0, 4.0, 2.0, 3.0));
+        onEdt(prefetcher::start);
+        for (int i = 0; i < 5; i++) {
+            onEdt(() -> {
+                if (fetches.inFlight > 0) {
+                    fetches.completeNext();
+                }
+            });
+        }
+        assertEquals(Arrays.asList(1, 3, 4), fetches.started);
+
+        Config.getPref().putInt(Prefetcher.PREF_PREFETCH_BUDGET, 0);
+        final Fetches none = new Fetches();
+        final Prefetcher disabled = new Prefetcher(() -> none.candidates(1.0));
+        onEdt(disabled::start);
+        assertEquals(0, none.started.size());
+    }
+
+    /**
+     * No more fetches than the concurrency preference should run at the same time
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    @Test
+    void testConcurrency() throws InterruptedException, InvocationTargetException {
+        Config.getPref().putInt(Prefetcher.PREF_PREFETCH_CONCURRENCY, 2);
+        final Fetches fetches = new Fetches();
+        final Prefetcher prefetcher = new Prefetcher(() -> fetches.candidates(1.0, 2.0, 3.0, 4.0, 5.0));
+        onEdt(prefetcher::start);
+        assertEquals(2, fetches.started.size());
+        for (int i = 0; i < 5; i++) {
+            onEdt(fetches::completeNext);
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), fetches.started);
+        assertEquals(2, fetches.maxInFlight);
+    }
+
+    /**
+     * Moving the map view should drop the fetches that have not started yet
+     *
+     * @throws InterruptedException if the test was interrupted
+     * @throws InvocationTargetException if the test failed on the EDT
+     */
+    @Test
+    void testRestartDropsQueued() throws InterruptedException, InvocationTargetException {
+        Config.getPref().putInt(Prefetcher.PREF_PREFETCH_CONCURRENCY, 1);
+        final Fetches fetches = new Fetches();
+        final Prefetcher prefetcher = new Prefetcher(() -> fetches.candidates(1.0, 2.0, 3.0));
+        try {
+            onEdt(prefetcher::start);
+            onEdt(prefetcher::restart);
+            onEdt(fetches::completeNext);
+            assertEquals(Arrays.asList(0), fetches.started);
+        } finally {
+            onEdt(prefetcher::disable);
+        }
+    }
+}
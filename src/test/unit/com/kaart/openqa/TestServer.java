@@ -0,0 +1,140 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server for tests. Every path returns the same response, and
+ * {@code If-None-Match} requests for the current ETag get a 304.
+ */
+public class TestServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Headers> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile int status = HttpURLConnection.HTTP_OK;
+    private volatile String body = "";
+    private volatile String eTag;
+    private volatile String lastModified;
+    private volatile CountDownLatch gate;
+
+    /**
+     * Start a server on the loopback address
+     *
+     * @throws IOException if the server could not be started
+     */
+    public TestServer() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        this.requests.add(exchange.getRequestHeaders());
+        final CountDownLatch currentGate = this.gate;
+        try {
+            if (currentGate != null) {
+                currentGate.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final String currentETag = this.eTag;
+        if (currentETag != null && currentETag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            exchange.close();
+            return;
+        }
+        if (currentETag != null) {
+            exchange.getResponseHeaders().add("ETag", currentETag);
+        }
+        if (this.lastModified != null) {
+            exchange.getResponseHeaders().add("Last-Modified", this.lastModified);
+        }
+        final byte[] bytes = this.body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(this.status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Get the URL for a path on this server
+     *
+     * @param path The path, starting with {@code /}
+     * @return The URL
+     */
+    public String getUrl(String path) {
+        return "http://localhost:" + this.server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Set the response for all paths
+     *
+     * @param status The status code
+     * @param body   The body
+     */
+    public void setResponse(int status, String body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    /**
+     * Set the ETag of the response
+     *
+     * @param eTag The ETag, or {@code null} for none
+     */
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    /**
+     * Set the Last-Modified date of the response
+     *
+     * @param lastModified The date, or {@code null} for none
+     */
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Hold the responses until a latch is counted down
+     *
+     * @param gate The latch, or {@code null} to respond at once
+     */
+    public void setGate(CountDownLatch gate) {
+        this.gate = gate;
+    }
+
+    /**
+     * Get the headers of the requests that were received
+     *
+     * @return The request headers, oldest first
+     */
+    public List<Headers> getRequests() {
+        synchronized (this.requests) {
+            return new ArrayList<>(this.requests);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
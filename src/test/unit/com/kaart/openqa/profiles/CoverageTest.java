@@ -0,0 +1,81 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Test class for {@link Coverage}
+ */
+class CoverageTest {
+    /**
+     * Only the tiles that were not downloaded before should be missing
+     */
+    @Test
+    void testMissing() {
+        final Coverage coverage = new Coverage();
+        final List<Bounds> first = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -108.0)),
+                12, 256);
+        final List<Bounds> both = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -107.9)),
+                12, 256);
+        assertEquals(first, coverage.getMissing("1,2", first));
+        first.forEach(tile -> coverage.add("1,2", tile));
+        assertTrue(coverage.getMissing("1,2", first).isEmpty());
+        final List<Bounds> missing = coverage.getMissing("1,2", both);
+        assertEquals(both.size() - first.size(), missing.size());
+        assertTrue(Collections.disjoint(first, missing));
+    }
+
+    /**
+     * A larger tile should cover the smaller tiles inside it
+     */
+    @Test
+    void testLowerZoomCovers() {
+        final Coverage coverage = new Coverage();
+        final Bounds area = new Bounds(39.01, -108.01, 39.02, -108.0);
+        TileGrid.getTiles(Collections.singleton(area), 10, 256).forEach(tile -> coverage.add(null, tile));
+        assertTrue(coverage.getMissing(null, TileGrid.getTiles(Collections.singleton(area), 12, 256)).isEmpty());
+    }
+
+    /**
+     * Other enabled errors should have their own area, and clearing should make
+     * everything missing
+     */
+    @Test
+    void testErrorSets() {
+        final Coverage coverage = new Coverage();
+        final List<Bounds> tiles = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -108.0)),
+                12, 256);
+        tiles.forEach(tile -> coverage.add("1", tile));
+        // Tiles downloaded for other errors should not count
+        assertEquals(tiles, coverage.getMissing("1,2", tiles));
+        tiles.forEach(tile -> coverage.add("1,2", tile));
+        // Switching back should not download everything again
+        assertTrue(coverage.getMissing("1", tiles).isEmpty());
+        assertTrue(coverage.getMissing("1,2", tiles).isEmpty());
+        coverage.clear();
+        assertEquals(tiles, coverage.getMissing("1", tiles));
+        assertEquals(tiles, coverage.getMissing("1,2", tiles));
+    }
+
+    /**
+     * Removing an area should only make the tiles in it missing, for all error sets
+     */
+    @Test
+    void testRemove() {
+        final Coverage coverage = new Coverage();
+        final List<Bounds> tiles = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -107.9)),
+                12, 256);
+        tiles.forEach(tile -> coverage.add("1", tile));
+        tiles.forEach(tile -> coverage.add("2", tile));
+        coverage.remove(tiles.get(0));
+        assertEquals(Collections.singletonList(tiles.get(0)), coverage.getMissing("1", tiles));
+        assertEquals(Collections.singletonList(tiles.get(0)), coverage.getMissing("2", tiles));
+    }
+}
@@ -0,0 +1,189 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.kaart.openqa.OpenQADataSet;
+import com.kaart.openqa.TestServer;
+import com.kaart.openqa.annotations.OpenQACacheAnnotation;
+
+/**
+ * Test class for {@link GenericInformation}
+ */
+@BasicPreferences
+class GenericInformationTest {
+    private static final List<Bounds> BOUNDS = Collections.singletonList(new Bounds(39.01, -108.01, 39.02, -108.0));
+
+    /**
+     * Tiles should only be downloaded again if they were missing errors
+     */
+    @Test
+    void testIncompleteTilesNotCovered() {
+        final TestInformation information = new TestInformation();
+        final AtomicInteger fetches = new AtomicInteger();
+        final boolean[] incomplete = {true};
+        information.setFetcher(bound -> {
+            fetches.incrementAndGet();
+            final OpenQADataSet<Long, OpenQANode<Long>> dataSet = information.createNewDataSet();
+            dataSet.addPrimitive(TestInformation.createNode(fetches.get(), 39.015, -108.005, "1"));
+            dataSet.setIncomplete(incomplete[0]);
+            return dataSet;
+        });
+        assertEquals(1, information.getErrors(BOUNDS, NullProgressMonitor.INSTANCE).allPrimitives().size());
+        assertEquals(1, information.getErrors(BOUNDS, NullProgressMonitor.INSTANCE).allPrimitives().size());
+        assertEquals(2, fetches.get());
+
+        incomplete[0] = false;
+        information.getErrors(BOUNDS, NullProgressMonitor.INSTANCE);
+        assertEquals(0, information.getErrors(BOUNDS, NullProgressMonitor.INSTANCE).allPrimitives().size());
+        assertEquals(3, fetches.get());
+    }
+
+    /**
+     * Refreshed tiles should be downloaded again, and their errors should replace
+     * the errors that are shown, without touching the other tiles
+     *
+     * @throws IOException if the test server could not be started
+     */
+    @Test
+    @OpenQACacheAnnotation
+    void testRefreshedTileReplaced() throws IOException {
+        try (TestServer server = new TestServer()) {
+            final TestInformation information = new TestInformation();
+            information.setBaseApi(server.getUrl("/api/"));
+            final List<Bounds> bounds = Arrays.asList(new Bounds(39.01, -108.01, 39.02, -108.0),
+                    new Bounds(39.01, -107.91, 39.02, -107.9));
+            final Map<Bounds, String> urls = new ConcurrentHashMap<>();
+            final List<OpenQANode<Long>> upstream = Collections.synchronizedList(new ArrayList<>(Arrays.asList(
+                    TestInformation.createNode(1, 39.015, -108.005, "1"),
+                    TestInformation.createNode(2, 39.015, -107.905, "1"))));
+            information.setFetcher(bound -> {
+                final String url = information.getBaseApi() + bound.getMinLat() + ',' + bound.getMinLon();
+                try (InputStream is = information.getUrl(url, bound)) {
+                    is.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                urls.put(bound, url);
+                final OpenQADataSet<Long, OpenQANode<Long>> dataSet = information.createNewDataSet();
+                synchronized (upstream) {
+                    upstream.stream().filter(node -> bound.contains(node)).forEach(dataSet::addPrimitive);
+                }
+                return dataSet;
+            });
+            final OpenQADataSet<Long, OpenQANode<Long>> shown = information.createNewDataSet();
+            shown.mergeFrom(information.getErrors(bounds, NullProgressMonitor.INSTANCE));
+            assertEquals(2, shown.allPrimitives().size());
+            assertEquals(2, urls.size());
+
+            // Both errors were closed upstream, but only the first tile was refreshed
+            upstream.clear();
+            final Map.Entry<Bounds, String> first = urls.entrySet().stream()
+                    .filter(entry -> entry.getKey().contains(bounds.get(0).getCenter())).findFirst().orElse(null);
+            assertNotNull(first);
+            urls.clear();
+            assertFalse(information.dataRefreshed("https://example.org/other/"));
+            assertTrue(information.dataRefreshed(first.getValue()));
+            shown.mergeFrom(information.getErrors(bounds, NullProgressMonitor.INSTANCE));
+            assertEquals(Collections.singleton(first.getKey()), urls.keySet());
+            assertEquals(1, shown.allPrimitives().size());
+            assertEquals(2L, shown.allPrimitives().iterator().next().getIdentifier());
+
+            // The replacement should only happen once
+            upstream.add(TestInformation.createNode(3, 39.015, -107.905, "1"));
+            shown.mergeFrom(information.getErrors(bounds, NullProgressMonitor.INSTANCE));
+            assertEquals(1, shown.allPrimitives().size());
+        }
+    }
+
+    /**
+     * Prefetches that are cancelled before they start should not be run
+     *
+     * @throws ExecutionException if a prefetch failed
+     * @throws InterruptedException if the test was interrupted
+     * @throws TimeoutException if a prefetch did not finish
+     */
+    @Test
+    void testCancelledPrefetchNotRun() throws ExecutionException, InterruptedException, TimeoutException {
+        Config.getPref().putInt(FetchScheduler.PREF_MAX_CONNECTIONS_PER_HOST, 1);
+        final CountDownLatch block = new CountDownLatch(1);
+        final List<Long> fetched = Collections.synchronizedList(new ArrayList<>());
+        final TestInformation information = new TestInformation() {
+            @Override
+            public boolean needsAdditionalInformation(OpenQANode<Long> node) {
+                return true;
+            }
+
+            @Override
+            public boolean cacheAdditionalInformation(OpenQANode<Long> node) {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                fetched.add(node.getIdentifier());
+                return true;
+            }
+        };
+        // Other tests should not share the queue
+        information.setBaseApi("https://prefetch.example.org/api/");
+        final CompletableFuture<Boolean> first = information
+                .cacheAdditionalInformationAsync(TestInformation.createNode(1, 39.0, -108.0, "1"), true);
+        final CompletableFuture<Boolean> second = information
+                .cacheAdditionalInformationAsync(TestInformation.createNode(2, 39.0, -108.0, "1"), true);
+        assertTrue(second.cancel(false));
+        block.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertTrue(information.cacheAdditionalInformationAsync(TestInformation.createNode(3, 39.0, -108.0, "1"), true)
+                .get(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1L, 3L), fetched);
+    }
+
+    /**
+     * Ids that do not fit in the changeset tag should be left out
+     */
+    @Test
+    void testChangeSetTagLimit() {
+        assertEquals("test-1,test-2", GenericInformation.appendChangeSetTag(null, "test", Arrays.asList("1", "2")));
+        assertEquals("test-1,test-2", GenericInformation.appendChangeSetTag(" test-1 ", "test",
+                Collections.singletonList("2")));
+
+        // 5 characters for "test-", so an id of 250 characters fills the tag
+        final String longId = String.join("", Collections.nCopies(250, "1"));
+        assertEquals(255, GenericInformation.appendChangeSetTag(null, "test", Collections.singletonList(longId))
+                .length());
+        assertEquals("", GenericInformation.appendChangeSetTag(null, "test", Collections.singletonList(longId + '1')));
+
+        // The comma counts too
+        final String existing = GenericInformation.appendChangeSetTag(null, "test", Collections.singletonList(
+                longId.substring(0, 243)));
+        assertEquals(248, existing.length());
+        assertEquals(255, GenericInformation.appendChangeSetTag(existing, "test", Arrays.asList("1", "2")).length());
+        assertEquals(existing, GenericInformation.appendChangeSetTag(existing, "test", Arrays.asList("12", "3")));
+    }
+}
@@ -0,0 +1,95 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link OpenQANode}
+ */
+class OpenQANodeTest {
+    private static OpenQANode<Long> createNode(long id) {
+        return new OpenQANode<Long>(id, 39, -108) {
+        };
+    }
+
+    /**
+     * Tags should behave like a map
+     */
+    @Test
+    void testTags() {
+        final OpenQANode<Long> node = createNode(1);
+        assertFalse(node.hasKeys());
+        final Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("error_type", "30");
+        tags.put("title", "missing tags");
+        node.setKeys(tags);
+        assertEquals(tags, node.getKeys());
+        node.put("error_type", "31");
+        node.put("level", "2");
+        assertEquals("31", node.get("error_type"));
+        assertEquals(3, node.getNumKeys());
+        node.remove("title");
+        assertNull(node.get("title"));
+        assertEquals(2, node.getKeys().size());
+        node.put("level", null);
+        assertEquals(1, node.getNumKeys());
+        node.removeAll();
+        assertFalse(node.hasKeys());
+    }
+
+    /**
+     * Short values should be shared between nodes
+     */
+    @Test
+    void testSharedValues() {
+        final OpenQANode<Long> first = createNode(1);
+        final OpenQANode<Long> second = createNode(2);
+        first.put("object_type", new String("way"));
+        second.put(new String("object_type"), new String("way"));
+        assertSame(first.get("object_type"), second.get("object_type"));
+        assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+    }
+
+    /**
+     * Changing the tags should change the modification stamp
+     */
+    @Test
+    void testModificationStamp() {
+        final OpenQANode<Long> node = createNode(1);
+        int stamp = node.getModificationStamp();
+        node.put("error_type", "30");
+        assertNotEquals(stamp, stamp = node.getModificationStamp());
+        node.setKeys(node.getKeys());
+        assertNotEquals(stamp, stamp = node.getModificationStamp());
+        node.remove("missing");
+        assertEquals(stamp, node.getModificationStamp());
+        node.remove("error_type");
+        assertNotEquals(stamp, stamp = node.getModificationStamp());
+        node.setSelected(true);
+        assertEquals(stamp, node.getModificationStamp());
+    }
+
+    /**
+     * Flags should be independent
+     */
+    @Test
+    void testFlags() {
+        final OpenQANode<Long> node = createNode(1);
+        assertTrue(node.setSelected(true));
+        assertFalse(node.setSelected(true));
+        assertTrue(node.setModified(true));
+        assertTrue(node.setSelected(false));
+        assertFalse(node.isSelected());
+        assertTrue(node.isModified());
+    }
+}
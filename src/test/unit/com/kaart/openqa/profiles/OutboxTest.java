@@ -0,0 +1,152 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.kaart.openqa.OpenQADataSet;
+
+/**
+ * Test class for {@link Outbox}
+ */
+class OutboxTest {
+    /**
+     * Actions that were saved should be read back in the same order
+     */
+    @Test
+    void testWriteRead(@TempDir Path directory) throws IOException {
+        final Path file = directory.resolve("openqa").resolve("outbox.txt");
+        assertTrue(Outbox.read(file).isEmpty());
+        Outbox.write(file,
+                Arrays.asList(new Outbox.Entry("Osmose:1", "FIXED", "https://example.org/issue/1/done"),
+                        new Outbox.Entry("KeepRight:2", "FALSE_POSITIVE",
+                                "https://example.org/comment.php?st=ignore&co=&schema=1&id=2")));
+        final List<Outbox.Entry> entries = Outbox.read(file);
+        assertEquals(2, entries.size());
+        assertEquals("Osmose:1", entries.get(0).getIssue());
+        assertEquals("FIXED", entries.get(0).getAction());
+        assertEquals("https://example.org/issue/1/done", entries.get(0).getUrl());
+        assertEquals("KeepRight:2", entries.get(1).getIssue());
+        assertEquals("https://example.org/comment.php?st=ignore&co=&schema=1&id=2", entries.get(1).getUrl());
+    }
+
+    /**
+     * The delay between retries should double, up to a limit
+     */
+    @Test
+    void testRetryDelay() {
+        assertEquals(5_000, Outbox.getRetryDelay(1));
+        assertEquals(10_000, Outbox.getRetryDelay(2));
+        assertEquals(20_000, Outbox.getRetryDelay(3));
+        assertEquals(600_000, Outbox.getRetryDelay(Outbox.MAX_ATTEMPTS));
+        assertEquals(600_000, Outbox.getRetryDelay(Integer.MAX_VALUE));
+    }
+
+    private static Outbox.Entry add(String issue) {
+        final Outbox.Entry entry = new Outbox.Entry(issue, "FIXED", "https://example.org/" + issue);
+        Outbox.add(Collections.singletonList(entry));
+        return entry;
+    }
+
+    /**
+     * Actions that the error source rejects should not be sent again
+     */
+    @Test
+    void testRejected() {
+        final Outbox.Entry entry = add("Test:rejected");
+        assertEquals(Outbox.Status.SENDING, Outbox.getStatus("Test:rejected"));
+        Outbox.completed(entry, 404, null);
+        assertEquals(Outbox.Status.FAILED, entry.getFirstAttempt().getNow(null));
+        // The status is kept after the action is finished
+        assertEquals(Outbox.Status.FAILED, Outbox.getStatus("Test:rejected"));
+        assertEquals("FIXED", Outbox.getAction("Test:rejected"));
+    }
+
+    /**
+     * Actions that could not be sent should be retried, up to a limit
+     */
+    @Test
+    void testRetried() {
+        final Outbox.Entry entry = add("Test:retried");
+        Outbox.completed(entry, 503, null);
+        assertEquals(Outbox.Status.RETRYING, entry.getFirstAttempt().getNow(null));
+        assertEquals(Outbox.Status.RETRYING, Outbox.getStatus("Test:retried"));
+        for (int attempt = 2; attempt < Outbox.MAX_ATTEMPTS; attempt++) {
+            Outbox.completed(entry, null, new IOException("attempt " + attempt));
+            assertEquals(Outbox.Status.RETRYING, Outbox.getStatus("Test:retried"));
+        }
+        Outbox.completed(entry, 503, null);
+        assertEquals(Outbox.Status.FAILED, Outbox.getStatus("Test:retried"));
+    }
+
+    /**
+     * A newer action should replace an older action that was not sent yet
+     */
+    @Test
+    void testReplaced() {
+        final Outbox.Entry first = add("Test:replaced");
+        final Outbox.Entry second = new Outbox.Entry("Test:replaced", "FALSE_POSITIVE", "https://example.org/false");
+        Outbox.add(Collections.singletonList(second));
+        assertEquals(Outbox.Status.SENDING, first.getFirstAttempt().getNow(null));
+        Outbox.completed(first, 200, null);
+        // The result for the old action should not change the new action
+        assertEquals(Outbox.Status.SENDING, Outbox.getStatus("Test:replaced"));
+        assertEquals("FALSE_POSITIVE", Outbox.getAction("Test:replaced"));
+        assertFalse(second.getFirstAttempt().isDone());
+        Outbox.completed(second, 200, null);
+        assertEquals(Outbox.Status.SENT, second.getFirstAttempt().getNow(null));
+        assertEquals(Outbox.Status.SENT, Outbox.getStatus("Test:replaced"));
+    }
+
+    /**
+     * Only the most recent finished actions should be kept
+     */
+    @Test
+    void testFinishedLimit() {
+        final Outbox.Entry oldest = add("Test:oldest");
+        Outbox.completed(oldest, 200, null);
+        for (int i = 0; i < Outbox.MAX_FINISHED; i++) {
+            Outbox.completed(add("Test:finished" + i), 200, null);
+        }
+        assertNull(Outbox.getStatus("Test:oldest"));
+        assertEquals(Outbox.Status.SENT, Outbox.getStatus("Test:finished" + (Outbox.MAX_FINISHED - 1)));
+    }
+
+    /**
+     * Downloaded issues should show the actions that were not sent yet, e.g.
+     * after a restart
+     */
+    @Test
+    void testRestoreActions() {
+        final TestInformation information = new TestInformation();
+        final Outbox.Entry failed = add(information.getName() + ":2");
+        Outbox.completed(failed, 404, null);
+        add(information.getName() + ":1");
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = information.createNewDataSet();
+        dataSet.addPrimitive(TestInformation.createNode(1, 39, -108, "1"));
+        dataSet.addPrimitive(TestInformation.createNode(2, 39, -108, "1"));
+        dataSet.addPrimitive(TestInformation.createNode(3, 39, -108, "1"));
+        information.restoreActions(dataSet);
+        for (OpenQANode<Long> node : dataSet.allPrimitives()) {
+            if (node.getIdentifier() == 1) {
+                assertEquals(GenericInformation.IssueAction.FIXED, information.getActionTaken(node));
+                assertEquals("FIXED", node.get("error"));
+            } else {
+                // Failed actions and issues without actions should not change
+                assertNull(information.getActionTaken(node));
+                assertEquals("1", node.get("error"));
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import javax.swing.JButton;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+import com.kaart.openqa.OpenQADataSet;
+
+/**
+ * An error source for tests. The errors of a node are in its {@code error}
+ * tag, and the errors for an area come from {@link #setFetcher}.
+ */
+public class TestInformation extends GenericInformation<Long, OpenQANode<Long>, OpenQADataSet<Long, OpenQANode<Long>>> {
+    private FetchScheduler.Fetcher<Bounds, OpenQADataSet<Long, OpenQANode<Long>>> fetcher = bound -> null;
+    private String enabled = "1";
+    private String baseApi = "https://example.org/api/";
+
+    /**
+     * Create a node
+     *
+     * @param id    The id of the node
+     * @param lat   The latitude of the node
+     * @param lon   The longitude of the node
+     * @param error The error of the node
+     * @return The node
+     */
+    public static OpenQANode<Long> createNode(long id, double lat, double lon, String error) {
+        final OpenQANode<Long> node = new OpenQANode<Long>(id, lat, lon) {
+        };
+        node.put(ERROR_ID, Long.toString(id));
+        node.put("error", error);
+        return node;
+    }
+
+    /**
+     * Set the method to get the errors for an area
+     *
+     * @param fetcher The method to get the errors
+     */
+    public void setFetcher(FetchScheduler.Fetcher<Bounds, OpenQADataSet<Long, OpenQANode<Long>>> fetcher) {
+        this.fetcher = fetcher;
+    }
+
+    /**
+     * Set the enabled errors
+     *
+     * @param enabled The enabled errors
+     */
+    public void setEnabled(String enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Set the base API url
+     *
+     * @param baseApi The base API url
+     */
+    public void setBaseApi(String baseApi) {
+        this.baseApi = baseApi;
+    }
+
+    @Override
+    public String getName() {
+        return "Test";
+    }
+
+    @Override
+    public String getBaseApi() {
+        return this.baseApi;
+    }
+
+    @Override
+    public String getBaseImg() {
+        return "https://example.org/img/";
+    }
+
+    @Override
+    public String getBaseErrorUrl() {
+        return "https://example.org/error/";
+    }
+
+    @Override
+    public NavigableMap<String, String> getErrors() {
+        return new TreeMap<>();
+    }
+
+    @Override
+    public OpenQADataSet<Long, OpenQANode<Long>> getErrors(List<Bounds> bounds, ProgressMonitor progressMonitor) {
+        return getErrors(bounds, progressMonitor, this.fetcher);
+    }
+
+    @Override
+    public String buildDownloadErrorList() {
+        return this.enabled;
+    }
+
+    @Override
+    public List<String> buildDefaultPref() {
+        return Collections.singletonList("1");
+    }
+
+    @Override
+    protected String createNodeToolTip(OpenQANode<Long> node) {
+        return "<html>" + node.get("error") + "</html>";
+    }
+
+    @Override
+    public String getLayerName() {
+        return "Test Errors";
+    }
+
+    @Override
+    public String getError(OpenQANode<Long> node) {
+        return node.get("error");
+    }
+
+    @Override
+    public List<JButton> getActions(OpenQANode<Long> selectedNode) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    protected String getActionUrl(OpenQANode<Long> node, IssueAction action) {
+        return getBaseApi() + node.get(ERROR_ID) + '/' + action.name();
+    }
+
+    @Override
+    protected void applyAction(OpenQANode<Long> node, IssueAction action) {
+        node.put("error", action.name());
+    }
+
+    @Override
+    public OpenQADataSet<Long, OpenQANode<Long>> createNewDataSet() {
+        return new OpenQADataSet<>();
+    }
+}
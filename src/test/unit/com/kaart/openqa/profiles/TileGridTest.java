@@ -0,0 +1,67 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Test class for {@link TileGrid}
+ */
+class TileGridTest {
+    /**
+     * Overlapping bounds inside a single tile should use the same tile
+     */
+    @Test
+    void testOverlappingBoundsShareTiles() {
+        List<Bounds> first = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -108.0)), 12,
+                256);
+        List<Bounds> second = TileGrid.getTiles(Collections.singleton(new Bounds(39.011, -108.009, 39.021, -108.001)),
+                12, 256);
+        assertEquals(1, first.size());
+        assertEquals(first, second);
+        Bounds tile = first.get(0);
+        assertTrue(tile.getMinLat() <= 39.01 && tile.getMaxLat() >= 39.02);
+        assertTrue(tile.getMinLon() <= -108.01 && tile.getMaxLon() >= -108.0);
+    }
+
+    /**
+     * Bounds that end on a tile edge should not include the next tile
+     */
+    @Test
+    void testTileEdge() {
+        Bounds tile = TileGrid.getTiles(Collections.singleton(new Bounds(39.01, -108.01, 39.02, -108.0)), 12, 256)
+                .get(0);
+        assertEquals(Collections.singletonList(tile), TileGrid.getTiles(Collections.singleton(tile), 12, 256));
+    }
+
+    /**
+     * Too many tiles should fall back to a lower zoom level
+     */
+    @Test
+    void testMaxTiles() {
+        List<Bounds> tiles = TileGrid.getTiles(Collections.singleton(new Bounds(38, -109, 40, -107)), 12, 16);
+        assertTrue(tiles.size() <= 16);
+    }
+
+    /**
+     * The quadrants should cover the bounds without overlapping
+     */
+    @Test
+    void testQuadrants() {
+        final Bounds bound = new Bounds(38, -109, 40, -107);
+        final List<Bounds> quadrants = TileGrid.getQuadrants(bound);
+        assertEquals(4, quadrants.size());
+        double area = 0;
+        for (Bounds quadrant : quadrants) {
+            assertTrue(bound.contains(quadrant.getMin()) && bound.contains(quadrant.getMax()));
+            area += quadrant.getWidth() * quadrant.getHeight();
+        }
+        assertEquals(bound.getWidth() * bound.getHeight(), area, 1e-9);
+    }
+}
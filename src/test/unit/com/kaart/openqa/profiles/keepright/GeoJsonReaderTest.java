@@ -0,0 +1,65 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.keepright;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.kaart.openqa.GeoJsonReader;
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * Test class for {@link GeoJsonReader}
+ */
+class GeoJsonReaderTest {
+    private static KeepRightDataSet parse(String json) {
+        return GeoJsonReader.parseDataSet(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+                KeepRightDataSet::new, (tags, coor) -> new KeepRightNode(
+                        Long.parseLong(tags.get(GenericInformation.ERROR_ID)), coor));
+    }
+
+    /**
+     * Features should be read no matter the order of their members
+     */
+    @Test
+    void testFeatureCollection() {
+        KeepRightDataSet dataSet = parse("{\"features\":[{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\","
+                + "\"coordinates\":[-108.5,39.25]},\"properties\":{\"error_id\":\"1\",\"error_type\":30,"
+                + "\"nested\":{\"a\":\"b\"},\"empty\":null}},{\"properties\":{\"error_id\":\"2\"},\"geometry\":"
+                + "{\"coordinates\":[-108,39],\"type\":\"Point\"},\"type\":\"Feature\"}],\"type\":\"FeatureCollection\"}");
+        assertEquals(2, dataSet.getNodes().size());
+        KeepRightNode node = dataSet.getNodes().stream().filter(n -> n.getIdentifier() == 1L).findFirst().orElse(null);
+        assertEquals(39.25, node.lat());
+        assertEquals(-108.5, node.lon());
+        assertEquals("30", node.get("error_type"));
+        assertEquals(2, node.getKeys().size());
+    }
+
+    /**
+     * Geometry collections and single features should still be read
+     */
+    @Test
+    void testGeometryCollectionAndFeature() {
+        // Both points have the same error id
+        assertEquals(1, parse("{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\",\"properties\":"
+                + "{\"error_id\":\"1\"},\"geometry\":{\"type\":\"GeometryCollection\",\"geometries\":["
+                + "{\"type\":\"Point\",\"coordinates\":[1,2]},{\"type\":\"Point\",\"coordinates\":[3,4]}]}}]}")
+                        .getNodes().size());
+        assertEquals(1, parse("{\"type\":\"Feature\",\"properties\":{\"error_id\":\"3\"},\"geometry\":"
+                + "{\"type\":\"Point\",\"coordinates\":[1,2]}}").getNodes().size());
+    }
+
+    /**
+     * Only points are supported
+     */
+    @Test
+    void testUnsupportedGeometry() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> parse("{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\",\"properties\":"
+                        + "{\"error_id\":\"1\"},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[1,2],[3,4]]}}]}"));
+    }
+}
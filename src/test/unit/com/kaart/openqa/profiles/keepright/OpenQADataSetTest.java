@@ -2,10 +2,16 @@
 package com.kaart.openqa.profiles.keepright;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Collection;
 
 import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.BBox;
 
 import com.kaart.openqa.OpenQADataSet;
+import com.kaart.openqa.profiles.OpenQANode;
+import com.kaart.openqa.profiles.TestInformation;
 
 /**
  * Test class for {@link com.kaart.openqa.OpenQADataSet}
@@ -19,4 +25,23 @@ class OpenQADataSetTest {
         OpenQADataSet<Long, KeepRightNode> testSet = new OpenQADataSet<>();
         assertDoesNotThrow(() -> testSet.mergeFrom(null));
     }
+
+    /**
+     * The nodes that are returned should not change when other threads change the dataset
+     */
+    @Test
+    void testReadsAreSnapshots() {
+        final OpenQADataSet<Long, OpenQANode<Long>> dataSet = new OpenQADataSet<>();
+        dataSet.addPrimitive(TestInformation.createNode(1, 39.0, -108.0, "1"));
+        final Collection<?> all = dataSet.allPrimitives();
+        final Collection<?> found = dataSet.searchNodes(new BBox(-108.1, 38.9, -107.9, 39.1));
+        final Collection<?> selected = dataSet.getSelectedNodes();
+        dataSet.addPrimitive(TestInformation.createNode(2, 39.0, -108.0, "1"));
+        dataSet.allPrimitives().forEach(node -> node.setSelected(true));
+        assertEquals(1, all.size());
+        assertEquals(1, found.size());
+        assertEquals(0, selected.size());
+        assertEquals(2, dataSet.size());
+        assertEquals(2, dataSet.getSelectedNodes().size());
+    }
 }
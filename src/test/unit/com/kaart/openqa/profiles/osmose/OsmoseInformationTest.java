@@ -0,0 +1,26 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.osmose;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+
+/**
+ * Test class for {@link OsmoseInformation}
+ */
+class OsmoseInformationTest {
+    /**
+     * The issues URL should ask for the limit, so that a full response can be
+     * recognized
+     */
+    @Test
+    void testIssuesUrlLimit() {
+        final String url = OsmoseInformation.getIssuesUrl("https://example.org/api/0.3/", "1070,1080",
+                new Bounds(39, -108, 39.5, -107.5));
+        assertTrue(url.startsWith("https://example.org/api/0.3/issues?"));
+        assertTrue(url.contains("&limit=" + OsmoseInformation.ISSUE_LIMIT + "&"));
+        assertTrue(url.contains("&item=1070,1080"));
+        assertTrue(url.contains("&bbox=-108.0,39.0,-107.5,39.5"));
+    }
+}
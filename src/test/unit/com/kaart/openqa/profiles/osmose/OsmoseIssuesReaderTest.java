@@ -0,0 +1,81 @@
+// License: GPL. For details, see LICENSE file.
+package com.kaart.openqa.profiles.osmose;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+
+import com.kaart.openqa.profiles.GenericInformation;
+
+/**
+ * Test class for {@link OsmoseIssuesReader}
+ */
+class OsmoseIssuesReaderTest {
+    /**
+     * Issues should be read with their coordinates, tags and decoded fields
+     */
+    @Test
+    void testReadIssues() {
+        final String json = "{\"description\":[\"ignored\"],\"issues\":[{\"id\":\"0f4c3b2a-1d2e-4f5a-8b9c-0d1e2f3a4b5c\","
+                + "\"lat\":39.25,\"lon\":-108,\"item\":1070,\"usernames\":[\"a\",\"b\"],\"osm_ids\":{\"ways\":[1,2]},"
+                + "\"title\":{\"auto\":\"Missing tag\"},\"fixable\":null},{\"lat\":1,\"lon\":2}]}";
+        final List<OsmoseNode> nodes = new ArrayList<>();
+        OsmoseIssuesReader.readIssues(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), nodes::add);
+        // The second issue has no id
+        assertEquals(1, nodes.size());
+        final OsmoseNode node = nodes.get(0);
+        assertEquals(UUID.fromString("0f4c3b2a-1d2e-4f5a-8b9c-0d1e2f3a4b5c"), node.getIdentifier());
+        assertEquals(39.25, node.lat());
+        assertEquals(-108, node.lon());
+        assertEquals("0f4c3b2a-1d2e-4f5a-8b9c-0d1e2f3a4b5c", node.get(GenericInformation.ERROR_ID));
+        assertEquals("1070", node.get("item"));
+        assertEquals(Arrays.asList("a", "b"), node.getUsernames());
+        assertEquals(Arrays.asList(new SimplePrimitiveId(1, OsmPrimitiveType.WAY),
+                new SimplePrimitiveId(2, OsmPrimitiveType.WAY)), node.getOsmIds());
+        assertEquals("Missing tag", node.getTitle());
+        assertNull(node.getSubtitle());
+        // The decoded values are not kept as tags
+        assertEquals(2, node.getNumKeys());
+    }
+
+    /**
+     * A refreshed issue should replace the decoded fields of the issue that is
+     * already in the dataset
+     */
+    @Test
+    void testMergeRefreshedIssue() {
+        final String issue = "{\"issues\":[{\"id\":\"0f4c3b2a-1d2e-4f5a-8b9c-0d1e2f3a4b5c\",\"lat\":39.25,\"lon\":-108,"
+                + "\"item\":1070,\"usernames\":[%s],\"osm_ids\":{\"nodes\":[%d]},\"title\":{\"auto\":\"%s\"}}]}";
+        final OsmoseDataSet dataSet = new OsmoseDataSet();
+        OsmoseIssuesReader.readIssues(new ByteArrayInputStream(
+                String.format(issue, "\"a\"", 1, "Old title").getBytes(StandardCharsets.UTF_8)), dataSet::addPrimitive);
+        final OsmoseNode node = dataSet.allPrimitives().iterator().next();
+        final int modificationStamp = node.getModificationStamp();
+
+        final OsmoseDataSet refreshed = new OsmoseDataSet();
+        OsmoseIssuesReader.readIssues(
+                new ByteArrayInputStream(String.format(issue, "\"b\"", 2, "New title").getBytes(StandardCharsets.UTF_8)),
+                refreshed::addPrimitive);
+        dataSet.mergeFrom(refreshed);
+
+        assertEquals(1, dataSet.allPrimitives().size());
+        assertSame(node, dataSet.allPrimitives().iterator().next());
+        assertNotEquals(modificationStamp, node.getModificationStamp());
+        assertEquals("New title", node.getTitle());
+        assertEquals(Collections.singletonList("b"), node.getUsernames());
+        assertEquals(Collections.singletonList(new SimplePrimitiveId(2, OsmPrimitiveType.NODE)), node.getOsmIds());
+    }
+}